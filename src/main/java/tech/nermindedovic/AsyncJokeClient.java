@@ -0,0 +1,436 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*-------------------------------------------------------------------------------
+Non-blocking JokeClient API. Every request is a CompletableFuture and each session
+keeps its next item prefetched, so asking for an item normally completes right away
+instead of waiting for connect + request + response.
+
+All sessions of one AsyncJokeClient share a small AsynchronousChannelGroup, so many
+logical clients can be multiplexed on a few threads.
+
+Mode switches: a prefetched item was fetched in whatever mode the server was in at
+that time. The client keeps one subscription (JokeSubscriptionServer, MODE events only)
+open for all of its sessions, so it knows the server's current categories without asking.
+next() hands out a buffered item only if its category is in the current selection; other
+items stay parked for their category and go out first once the server selects it again.
+The server already advanced past a prefetched position, so parking it (rather than
+dropping it) is what keeps the client from skipping positions. An item fetched in the
+few milliseconds between a switch and its MODE event may still go out in the old mode.
+While the subscription is not connected (e.g. a JokeServer started without
+-Djokeserver.subscriptions=true), next() asks the server every time and the client
+tries to subscribe again at most every RESUBSCRIBE_INTERVAL_MS.
+
+Closing: each session keeps one item prefetched, so whatever is buffered when the
+client is closed is never shown and the server has already moved past it. A client
+started again with the same id would skip those positions.
+ */
+public class AsyncJokeClient implements AutoCloseable {
+
+    static final int DEFAULT_THREADS = 2;
+    static final long CONNECT_TIMEOUT_MS = 2000;
+    static final long READ_TIMEOUT_MS = 2000;           // also bounds each write
+    static final long RESUBSCRIBE_INTERVAL_MS = 5000;
+
+    private static final int MAX_RESPONSE_BYTES = 64;
+    private static final int MAX_EVENT_BYTES = 1024;
+
+    private final AsynchronousChannelGroup group;
+    private final SocketAddress serverAddress;
+    private final SocketAddress subscriptionAddress;
+    private final int serverPort;
+
+    private volatile Set<String> modeCategories;        // category codes the server currently picks from, null while unknown
+    private ModeListener modeListener;                  // guarded by this
+    private long lastSubscribeAttempt;                  // nanoTime, guarded by this
+
+    /**
+     * Uses the subscription port that belongs to the joke server port (default or secondary).
+     */
+    public AsyncJokeClient(final String serverName, final int serverPort) throws IOException {
+        this(serverName, serverPort, (serverPort == JokeServer.JOKE_SERVER_SECONDARY_PORT)
+                ? JokeSubscriptionServer.SUBSCRIPTION_SECONDARY_PORT : JokeSubscriptionServer.SUBSCRIPTION_DEFAULT_PORT, DEFAULT_THREADS);
+    }
+
+    public AsyncJokeClient(final String serverName, final int serverPort, final int subscriptionPort, final int threads) throws IOException {
+        this.group = AsynchronousChannelGroup.withFixedThreadPool(threads, Executors.defaultThreadFactory());
+        this.serverAddress = new InetSocketAddress(serverName, serverPort);
+        this.subscriptionAddress = new InetSocketAddress(serverName, subscriptionPort);
+        this.serverPort = serverPort;
+        followModeChanges();
+    }
+
+    /**
+     * Starts a new logical client with its own UUID and kicks off its first prefetch.
+     */
+    public Session session(final String username) {
+        return new Session(username, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Waits up to 5 seconds for requests in flight, then closes whatever is still open.
+     * An interrupt while waiting does the same and keeps the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (modeListener != null) modeListener.close();
+            modeListener = null;
+        }
+        group.shutdown();
+        try {
+            if (group.awaitTermination(5, TimeUnit.SECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            group.shutdownNow();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // AsynchronousSocketChannel.connect has no timeout of its own
+    private static void failIfNotConnected(final CompletableFuture<Void> connected, final Runnable onTimeout) {
+        CompletableFuture.delayedExecutor(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS).execute(() -> {
+            if (connected.completeExceptionally(new SocketTimeoutException("connect timed out after " + CONNECT_TIMEOUT_MS + "ms"))) onTimeout.run();
+        });
+    }
+
+
+    // (re)opens the MODE subscription unless one is already open or connecting
+    private synchronized void followModeChanges() {
+        if (modeListener != null || group.isShutdown()) return;
+        final long now = System.nanoTime();
+        if (lastSubscribeAttempt != 0 && now - lastSubscribeAttempt < TimeUnit.MILLISECONDS.toNanos(RESUBSCRIBE_INTERVAL_MS)) return;
+        lastSubscribeAttempt = now;
+        modeListener = new ModeListener();
+        modeListener.start();
+    }
+
+    private synchronized void modeListenerEnded(final ModeListener listener, final Throwable e) {
+        if (modeListener != listener) return;           // closed on purpose
+        modeListener = null;
+        if (modeCategories != null) System.out.println("Mode subscription ended - " + e.getMessage());     // quiet while the server has none
+        modeCategories = null;                          // mode unknown again, sessions ask the server until we reconnect
+    }
+
+    // what the last MODE event said, null while not subscribed
+    Set<String> knownModeCategories() {
+        return modeCategories;
+    }
+
+    // MODE:J, MODE:J=3,P=1 -> [J], [J, P]
+    static Set<String> categoriesOf(final String modeEvent) {
+        final Set<String> categories = new HashSet<>();
+        for (final String part : modeEvent.substring("MODE:".length()).split(",")) {
+            final int weight = part.indexOf('=');
+            categories.add((weight < 0) ? part.trim() : part.substring(0, weight).trim());
+        }
+        return categories;
+    }
+
+
+    public final class Session {
+        private final String username;
+        private final String clientId;
+
+        // server responses (M:N) fetched but not handed out yet, by mode
+        private final Map<String, Deque<String>> buffered = new HashMap<>();
+        private boolean refillInFlight;
+
+        private Session(final String username, final String clientId) {
+            this.username = username;
+            this.clientId = clientId;
+            refill();
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        /**
+         * @return the next joke/proverb, formatted the same way JokeClient prints it
+         */
+        public CompletableFuture<String> next() {
+            final Set<String> categories = modeCategories;
+            if (categories == null) followModeChanges();
+            final String ready;
+            synchronized (this) {
+                ready = (categories == null) ? null : pollAny(categories);
+            }
+            if (ready != null) {
+                refill();
+                return CompletableFuture.completedFuture(JokeClient.render(ready, username, serverPort));
+            }
+
+            // nothing buffered for the current selection (or selection unknown): ask the server and
+            // hand out the oldest item for the category it answered with
+            return fetch().thenApply(data -> {
+                final String item;
+                synchronized (this) {
+                    item = poll(accept(data));
+                }
+                refill();
+                return JokeClient.render(item, username, serverPort);
+            });
+        }
+
+        // keep one item of the current selection ready (any item while the selection is unknown), one prefetch at a time
+        private void refill() {
+            final Set<String> categories = modeCategories;
+            synchronized (this) {
+                if (refillInFlight || hasAny(categories)) return;
+                refillInFlight = true;
+            }
+            fetch().whenComplete((data, error) -> {
+                synchronized (this) {
+                    refillInFlight = false;
+                    if (error == null) accept(data);
+                }
+                if (error != null) System.out.println("Prefetch failed for client=" + clientId + " - " + error);
+            });
+        }
+
+        // @return category of the item
+        private String accept(final String data) {
+            final String mode = JokeClient.categoryOf(data);
+            buffered.computeIfAbsent(mode, m -> new ArrayDeque<>()).addLast(data);
+            return mode;
+        }
+
+        private String poll(final String mode) {
+            final Deque<String> items = buffered.get(mode);
+            return (items == null) ? null : items.pollFirst();
+        }
+
+        private String pollAny(final Set<String> categories) {
+            for (final String category : categories) {
+                final String item = poll(category);
+                if (item != null) return item;
+            }
+            return null;
+        }
+
+        // categories null: any category
+        private boolean hasAny(final Set<String> categories) {
+            for (final Map.Entry<String, Deque<String>> items : buffered.entrySet()) {
+                if (!items.getValue().isEmpty() && (categories == null || categories.contains(items.getKey()))) return true;
+            }
+            return false;
+        }
+
+        private CompletableFuture<String> fetch() {
+            return LineExchange.send(group, serverAddress, clientId);
+        }
+    }
+
+
+    /*
+    Subscription asking for MODE events only (interval 0). Updates modeCategories for every
+    event; tells the client when the connection ends so it can forget the mode and reconnect.
+     */
+    private final class ModeListener {
+        private AsynchronousSocketChannel channel;
+        private final ByteBuffer events = ByteBuffer.allocate(MAX_EVENT_BYTES);
+        private final CompletableFuture<Void> connected = new CompletableFuture<>();
+
+        void start() {
+            try {
+                channel = AsynchronousSocketChannel.open(group);
+            } catch (IOException e) {
+                modeListenerEnded(this, e);
+                return;
+            }
+            channel.connect(subscriptionAddress, null, onConnect);
+            failIfNotConnected(connected, () -> fail(new SocketTimeoutException("subscription connect timed out")));
+        }
+
+        void close() {
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        private void fail(final Throwable e) {
+            connected.completeExceptionally(e);             // no connect timeout after this
+            close();
+            modeListenerEnded(this, e);
+        }
+
+        private final CompletionHandler<Void, Void> onConnect = new CompletionHandler<>() {
+            @Override
+            public void completed(final Void ignored, final Void attachment) {
+                if (!connected.complete(null)) return;          // timed out, channel already closed
+                final ByteBuffer request = ByteBuffer.wrap(("SUBSCRIBE " + UUID.randomUUID() + " 0\n").getBytes(StandardCharsets.UTF_8));
+                channel.write(request, request, onWrite);
+            }
+
+            @Override
+            public void failed(final Throwable e, final Void attachment) {
+                fail(e);
+            }
+        };
+
+        private final CompletionHandler<Integer, ByteBuffer> onWrite = new CompletionHandler<>() {
+            @Override
+            public void completed(final Integer written, final ByteBuffer request) {
+                if (request.hasRemaining()) channel.write(request, request, this);
+                else channel.read(events, null, onRead);
+            }
+
+            @Override
+            public void failed(final Throwable e, final ByteBuffer request) {
+                fail(e);
+            }
+        };
+
+        private final CompletionHandler<Integer, Void> onRead = new CompletionHandler<>() {
+            @Override
+            public void completed(final Integer read, final Void attachment) {
+                if (read < 0) {
+                    fail(new IOException("server closed the subscription"));
+                    return;
+                }
+                events.flip();
+                int lineStart = 0;
+                for (int i = 0; i < events.limit(); i++) {
+                    if (events.get(i) != '\n') continue;
+                    final String event = new String(events.array(), lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+                    if (event.startsWith("MODE:")) modeCategories = categoriesOf(event);
+                    lineStart = i + 1;
+                }
+                events.position(lineStart);
+                events.compact();
+                if (!events.hasRemaining()) {
+                    fail(new IOException("subscription event longer than " + MAX_EVENT_BYTES + " bytes"));
+                    return;
+                }
+                channel.read(events, null, this);
+            }
+
+            @Override
+            public void failed(final Throwable e, final Void attachment) {
+                fail(e);
+            }
+        };
+    }
+
+
+    /*
+    One request line out, one response line back over a fresh connection, same as the JokeServer
+    worker threads expect, but driven by completion handlers instead of a blocked thread.
+     */
+    static final class LineExchange {
+        private final AsynchronousSocketChannel channel;
+        private final ByteBuffer request;
+        private final ByteBuffer response = ByteBuffer.allocate(MAX_RESPONSE_BYTES);
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> connected = new CompletableFuture<>();
+
+        private LineExchange(final AsynchronousSocketChannel channel, final String line) {
+            this.channel = channel;
+            this.request = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        static CompletableFuture<String> send(final AsynchronousChannelGroup group, final SocketAddress address, final String line) {
+            final AsynchronousSocketChannel channel;
+            try {
+                channel = AsynchronousSocketChannel.open(group);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            final LineExchange exchange = new LineExchange(channel, line);
+            channel.connect(address, null, exchange.onConnect);
+            failIfNotConnected(exchange.connected, () -> exchange.fail(new SocketTimeoutException("connect timed out")));
+            return exchange.result;
+        }
+
+        private final CompletionHandler<Void, Void> onConnect = new CompletionHandler<>() {
+            @Override
+            public void completed(final Void ignored, final Void attachment) {
+                if (!connected.complete(null)) return;          // timed out, already failed
+                channel.write(request, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS, null, onWrite);
+            }
+
+            @Override
+            public void failed(final Throwable e, final Void attachment) {
+                fail(e);
+            }
+        };
+
+        private final CompletionHandler<Integer, Void> onWrite = new CompletionHandler<>() {
+            @Override
+            public void completed(final Integer written, final Void attachment) {
+                if (request.hasRemaining()) channel.write(request, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS, null, this);
+                else channel.read(response, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS, null, onRead);      // InterruptedByTimeoutException if the server never answers
+            }
+
+            @Override
+            public void failed(final Throwable e, final Void attachment) {
+                fail(e);
+            }
+        };
+
+        private final CompletionHandler<Integer, Void> onRead = new CompletionHandler<>() {
+            @Override
+            public void completed(final Integer read, final Void attachment) {
+                if (read >= 0 && response.hasRemaining() && !hasLine()) {
+                    channel.read(response, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS, null, this);
+                    return;
+                }
+                closeChannel();
+                final String data = new String(response.array(), 0, response.position(), StandardCharsets.UTF_8).trim();
+                if (data.isEmpty()) result.completeExceptionally(new IOException("server closed connection without a response"));
+                else result.complete(data);
+            }
+
+            @Override
+            public void failed(final Throwable e, final Void attachment) {
+                fail(e);
+            }
+        };
+
+        private boolean hasLine() {
+            for (int i = 0; i < response.position(); i++) {
+                if (response.get(i) == '\n') return true;
+            }
+            return false;
+        }
+
+        private void fail(final Throwable e) {
+            connected.completeExceptionally(e);
+            closeChannel();
+            result.completeExceptionally(e);
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package tech.nermindedovic;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*-------------------------------------------------------------------------------
+What the server currently hands out: a single category or a weighted mix of them.
+Immutable, swapped as a whole by the admin path.
+
+Spec (admin command "mode <spec>", subscription MODE:<spec> events):
+    J           only category J
+    J=3,P=1     J three times as often as P
+ */
+final class CategorySelection {
+    private final int[] indexes;
+    private final int[] cumulativeWeights;      // null for a single category
+
+    private CategorySelection(final int[] indexes, final int[] cumulativeWeights) {
+        this.indexes = indexes;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    static CategorySelection single(final int index) {
+        return new CategorySelection(new int[]{index}, null);
+    }
+
+    static CategorySelection parse(final String spec) {
+        final String[] parts = spec.trim().split(",");
+        if (parts.length == 1 && !parts[0].contains("=")) return single(requireIndex(parts[0]));
+
+        final int[] indexes = new int[parts.length];
+        final int[] cumulativeWeights = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            final String[] weighted = parts[i].trim().split("=");
+            if (weighted.length != 2) throw new IllegalArgumentException("expected CODE=WEIGHT, got " + parts[i]);
+            indexes[i] = requireIndex(weighted[0]);
+            final int weight = Integer.parseInt(weighted[1].trim());
+            if (weight <= 0) throw new IllegalArgumentException("weight must be positive, got " + parts[i]);
+            try {
+                total = Math.addExact(total, weight);           // pick() rolls in [0, total), must stay a positive int
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("weights must add up to at most " + Integer.MAX_VALUE + ", got " + spec.trim());
+            }
+            cumulativeWeights[i] = total;
+        }
+        return new CategorySelection(indexes, cumulativeWeights);
+    }
+
+    private static int requireIndex(final String code) {
+        final int index = ContentCategories.indexOf(code.trim());
+        if (index < 0) throw new IllegalArgumentException("unknown category " + code.trim());
+        return index;
+    }
+
+    /**
+     * @return index of the category to serve for one request
+     */
+    int pick() {
+        if (cumulativeWeights == null) return indexes[0];
+        final int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        final int slot = Arrays.binarySearch(cumulativeWeights, roll + 1);
+        return indexes[(slot >= 0) ? slot : -slot - 1];
+    }
+
+    // <Enter> on the admin client: next category in registry order, a mix goes back to the first one
+    CategorySelection next() {
+        if (cumulativeWeights != null) return single(0);
+        return single((indexes[0] + 1) % ContentCategories.count());
+    }
+
+    // same format parse() accepts
+    @Override
+    public String toString() {
+        return format(false);
+    }
+
+    // for humans: category names instead of codes
+    String describe() {
+        return format(true);
+    }
+
+    private String format(final boolean names) {
+        final StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0) spec.append(',');
+            spec.append(names ? ContentCategories.name(indexes[i]) : ContentCategories.code(indexes[i]));
+            if (cumulativeWeights != null) spec.append('=').append(cumulativeWeights[i] - ((i == 0) ? 0 : cumulativeWeights[i - 1]));
+        }
+        return spec.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+A joke, admin or Inet connection accepted by JokeServer, AdminLooper or a JokeServerHost reactor.
+ */
+@Name("tech.nermindedovic.ConnectionAccepted")
+@Label("Connection Accepted")
+@Category("Joke Server")
+@StackTrace(false)
+class ConnectionAcceptedEvent extends Event {
+    @Label("Service Port")
+    int port;
+
+    @Label("Remote Address")
+    String remoteAddress;
+}
@@ -0,0 +1,57 @@
+package tech.nermindedovic;
+
+/*-------------------------------------------------------------------------------
+Registry of content categories the server hands out positions for.
+Defaults to J:JOKE,P:PROVERB. Override with -Djokeserver.categories=J:JOKE,P:PROVERB,Q:QUOTE
+Every category has a single character code (used in responses, M:N) and a name.
+Categories are addressed by index everywhere on the request path.
+ */
+final class ContentCategories {
+    static final String CATEGORIES_PROPERTY = "jokeserver.categories";
+    static final String DEFAULT_CATEGORIES = "J:JOKE,P:PROVERB";
+
+    private static final String[] CODES;
+    private static final String[] NAMES;
+
+    static {
+        final String[] entries = System.getProperty(CATEGORIES_PROPERTY, DEFAULT_CATEGORIES).split(",");
+        CODES = new String[entries.length];
+        NAMES = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            final String[] entry = entries[i].trim().split(":");
+            if (entry.length != 2 || entry[0].length() != 1) throw new IllegalArgumentException("category must look like C:NAME, got " + entries[i]);
+            if (indexOf(entry[0], i) >= 0) throw new IllegalArgumentException("duplicate category code " + entry[0]);
+            CODES[i] = entry[0];
+            NAMES[i] = entry[1];
+        }
+    }
+
+    private ContentCategories() {
+    }
+
+    static int count() {
+        return CODES.length;
+    }
+
+    static String code(final int index) {
+        return CODES[index];
+    }
+
+    static String name(final int index) {
+        return NAMES[index];
+    }
+
+    /**
+     * @return index of the category with this code, -1 if there is none
+     */
+    static int indexOf(final String code) {
+        return indexOf(code, CODES.length);
+    }
+
+    private static int indexOf(final String code, final int registered) {
+        for (int i = 0; i < registered; i++) {
+            if (CODES[i].equals(code)) return i;
+        }
+        return -1;
+    }
+}
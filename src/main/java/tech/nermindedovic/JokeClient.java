@@ -3,9 +3,12 @@ package tech.nermindedovic;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.net.Socket;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Objects.nonNull;
 
@@ -24,9 +27,9 @@ import static java.util.Objects.nonNull;
  */
 class ClientWorker implements Runnable {
 
-    private static final String DEFAULT_RESPONSE_FORMAT = "%s %s : %s";
-    private static final String SECONDARY_RESPONSE_FORMAT = "<S2> %s %s : %s";
-
+    static final int UDP_TIMEOUT_MS = 300;
+    static final int UDP_ATTEMPTS = 5;
+    private static final int MAX_DATAGRAM_BYTES = 512;
 
     private final String clientId;
     private final String username;
@@ -40,34 +43,39 @@ class ClientWorker implements Runnable {
         this.serverPort = serverPort;
     }
 
+    /**
+     * One datagram out (clientId + nonce), one back (nonce + M:N), see JokeDatagramServer.
+     * Retries reuse the nonce, so the server answers a retry without advancing our position twice.
+     * TCP requests go through AsyncJokeClient.
+     */
     @Override
     public void run() {
-        try (final Socket socket = new Socket(serverName, serverPort);
-            final BufferedReader fromJokeServer = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            final PrintStream toJokeServer = new PrintStream(socket.getOutputStream()))
-        {
-            toJokeServer.println(clientId);         // server needs UUID to identify clients respectively
-            toJokeServer.flush();
-
-            final String data = fromJokeServer.readLine();          // wait until joke/proverb arrives
-            final String response = handleResponse(new ServerResponseHandler(data), serverPort);        // turns JN | PN (where N can be any number >= 0) into J[A-D] | P[A-D]
-            System.out.println(response);
+        final long nonce = ThreadLocalRandom.current().nextLong();
+        final byte[] request = (clientId + " " + nonce).getBytes(StandardCharsets.UTF_8);
+        final String expectedPrefix = nonce + " ";
+        try (final DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(UDP_TIMEOUT_MS);
+            final DatagramPacket packet = new DatagramPacket(request, request.length, InetAddress.getByName(serverName), serverPort);
+            final DatagramPacket reply = new DatagramPacket(new byte[MAX_DATAGRAM_BYTES], MAX_DATAGRAM_BYTES);
+            for (int attempt = 1; attempt <= UDP_ATTEMPTS; attempt++) {
+                socket.send(packet);
+                try {
+                    while (true) {
+                        socket.receive(reply);
+                        final String data = new String(reply.getData(), 0, reply.getLength(), StandardCharsets.UTF_8);
+                        if (!data.startsWith(expectedPrefix)) continue;        // late answer to an earlier request
+                        System.out.println(JokeClient.render(data.substring(expectedPrefix.length()), username, serverPort));
+                        return;
+                    }
+                } catch (SocketTimeoutException e) {
+                    // lost on the way there or back, retry with the same nonce
+                }
+            }
+            System.out.println("No response from joke server after " + UDP_ATTEMPTS + " attempts");
         } catch (IOException e) {
             System.out.println("CATCH JOKE CLIENT WORKER");
             e.printStackTrace();
         }
-
-    }
-
-
-    private String handleResponse(final ServerResponseHandler handler, final int serverPort) {
-        final String key = handler.convertToClientSideKey();                // key will look like JX | PX where X is [A-D]
-        if (handler.isCurrModeJoke()) {                                     // key is for joke map
-            if (serverPort == JokeClient.PRIMARY_SERVER_PORT) return String.format(DEFAULT_RESPONSE_FORMAT, key, username, JokeClient.getJokeMap().get(key));
-            else return String.format(SECONDARY_RESPONSE_FORMAT, key, username, JokeClient.getJokeMap().get(key));
-        }
-        if (serverPort == JokeClient.PRIMARY_SERVER_PORT) return String.format(DEFAULT_RESPONSE_FORMAT, key, username, JokeClient.getProverbMap().get(key));      // key is for proverb map
-        return String.format(SECONDARY_RESPONSE_FORMAT, key, username, JokeClient.getProverbMap().get(key));
     }
 
 }
@@ -78,18 +86,17 @@ class ClientWorker implements Runnable {
  */
 class ServerResponseHandler {
     private final String mode;
-    private final boolean isCurrModeJoke;
     private final int serverPosition;
 
     public ServerResponseHandler(String response) {
         final String[] keySplit = response.split(":");
         this.mode = keySplit[0];
-        this.isCurrModeJoke = mode.equals("J");
         this.serverPosition = Integer.parseInt(keySplit[1]);
     }
 
-    public boolean isCurrModeJoke() {
-        return isCurrModeJoke;
+    // category code, J | P by default
+    public String getMode() {
+        return mode;
     }
 
     // enriched so that P0 -> PA, J1 -> JB
@@ -110,19 +117,11 @@ class ServerResponseHandler {
      * @return position (within range of joke/proverb map)
      */
     private int getClientAppropriatePosition() {
-        int clientPosition;
-        if (isCurrModeJoke) {
-            clientPosition = serverPosition % JokeClient.getJokeMap().size();
-            if (serverPosition != 0 && clientPosition == 0) {
-                final Map<String, String> shuffledMap = JokeClient.shuffleMap(JokeClient.getJokeMap());
-                JokeClient.setJokeMap(shuffledMap);
-            }
-        } else {
-            clientPosition = serverPosition % JokeClient.getProverbMap().size();
-            if (serverPosition != 0 && clientPosition == 0) {
-                final Map<String, String> shuffledMap = JokeClient.shuffleMap(JokeClient.getProverbMap());
-                JokeClient.setProverbMap(shuffledMap);
-            }
+        final Map<String, String> content = JokeClient.getContentMap(mode);
+        if (content == null || content.isEmpty()) return 0;           // category this client has no data for
+        final int clientPosition = serverPosition % content.size();
+        if (serverPosition != 0 && clientPosition == 0) {
+            JokeClient.setContentMap(mode, JokeClient.shuffleMap(content));
         }
         return clientPosition;
     }
@@ -136,23 +135,18 @@ public class JokeClient {
     // so long as the server is formatting keys correctly (ie. J[A-Z] & P[A-Z] we should be good to handle issues client-side (ie default message on unmatched) until
     // client side has matching data to tango with servers keys
 
-    static Map<String, String> jokeMap = createJokeMap();
-    static Map<String, String> proverbMap = createProverbMap();
-
-    static Map<String, String> getJokeMap() {
-        return jokeMap;
-    }
-
-    static Map<String, String> getProverbMap() {
-        return proverbMap;
-    }
+    // local content by server category code. categories missing here are answered with a default message
+    static final Map<String, Map<String, String>> contentByCategory = new ConcurrentHashMap<>(Map.of(
+            "J", createJokeMap(),
+            "P", createProverbMap()
+    ));
 
-    static void setJokeMap(Map<String, String> jokeMap) {
-        JokeClient.jokeMap = jokeMap;
+    static Map<String, String> getContentMap(final String category) {
+        return contentByCategory.get(category);
     }
 
-    static void setProverbMap(Map<String, String> proverbMap) {
-        JokeClient.proverbMap = proverbMap;
+    static void setContentMap(final String category, final Map<String, String> content) {
+        contentByCategory.put(category, content);
     }
 
     static Map<String, String> shuffleMap(final Map<String, String> oldMap) {
@@ -169,25 +163,51 @@ public class JokeClient {
     }
 
 
+    private static final String DEFAULT_RESPONSE_FORMAT = "%s %s : %s";
+    private static final String SECONDARY_RESPONSE_FORMAT = "<S2> %s %s : %s";
+    private static final String UNKNOWN_CATEGORY_FORMAT = "(no local content for category %s)";
+
+    // shared by ClientWorker, AsyncJokeClient sessions and JokeSubscriber. synchronized as ServerResponseHandler may reshuffle the static content maps
+    static synchronized String render(final String data, final String username, final int serverPort) {
+        return handleResponse(new ServerResponseHandler(data), username, serverPort);
+    }
+
+    private static String handleResponse(final ServerResponseHandler handler, final String username, final int serverPort) {
+        final String key = handler.convertToClientSideKey();                // key will look like MX where M is the category code and X is [A-D]
+        final Map<String, String> content = getContentMap(handler.getMode());
+        final String text = (content == null) ? String.format(UNKNOWN_CATEGORY_FORMAT, handler.getMode()) : content.get(key);
+        if (serverPort == PRIMARY_SERVER_PORT) return String.format(DEFAULT_RESPONSE_FORMAT, key, username, text);
+        return String.format(SECONDARY_RESPONSE_FORMAT, key, username, text);
+    }
+
+    // category code of a server response, M in M:N
+    static String categoryOf(final String data) {
+        return data.substring(0, data.indexOf(':'));
+    }
+
+
     static final int PRIMARY_SERVER_PORT = 4545;            // JokeClient default port
     static final int SECONDARY_SERVER_PORT = 4546;          // JokeClient secondary port if any command line arguments are present on startup
+    static final String UDP_PROPERTY = "jokeclient.udp";                // server side: JokeServerHost, or JokeServer with -Djokeserver.udp=true
 
 
     public static void main (String[] args) {
 
         final String serverName = "localhost";
         final int port = (args.length >= 1) ? SECONDARY_SERVER_PORT : PRIMARY_SERVER_PORT;
+        final boolean udp = Boolean.getBoolean(UDP_PROPERTY);           // -Djokeclient.udp=true
 
         System.out.println("Running Nermin Dedovic's JokeClient!");
-        System.out.println("Using server: " + serverName + ", Port: " + port);
+        System.out.println("Using server: " + serverName + ", Port: " + port + (udp ? " (UDP)" : ""));
 
         final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
         boolean continueFlag = true;
-        try {
+        try (final AsyncJokeClient client = udp ? null : new AsyncJokeClient(serverName, port)) {       // UDP needs no channel group or MODE subscription
             System.out.print("Enter a username:");
             System.out.flush ();
             String username = in.readLine ();
             final String uniqueClientID = UUID.randomUUID().toString();
+            final AsyncJokeClient.Session session = udp ? null : client.session(username);     // starts prefetching the first item while the user reads
             System.out.println("READY TO GO (OR ENTER quit) " + username);
             while (continueFlag) {
                 final String potentialQuit = in.readLine();                     // to invoke a response : entering anything besides quit
@@ -198,7 +218,15 @@ public class JokeClient {
                     continueFlag = false;
                     continue;   // don't complete block of logic, back to condition check
                 }
-                new ClientWorker(username, uniqueClientID, serverName, port).run();     // give username passed and UUID generated to handle req's
+                if (udp) {
+                    new ClientWorker(username, uniqueClientID, serverName, port).run();      // one datagram each way, retried on timeout
+                    continue;
+                }
+                try {
+                    System.out.println(session.next().join());         // prefetched item of the current mode if there is one, else a round trip
+                } catch (CompletionException e) {
+                    System.out.println("Error from JokeClient request = " + e.getCause().getMessage());
+                }
             }
         } catch (IOException e) {
             System.out.println("Error from JokeClient main thread = " + e.getMessage());
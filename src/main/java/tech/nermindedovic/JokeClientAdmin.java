@@ -35,39 +35,57 @@ public class JokeClientAdmin {
         System.out.println("Using server: " + serverName + ", Port: " + port);
         System.out.println();               //empty line separator
         try (BufferedReader systemIn = new BufferedReader(new InputStreamReader(System.in))) {
-            System.out.println("JokeClientAdminWorker connected. Safe to press <Enter> or shutdown.");      // shutdown not implemented
+            System.out.println("JokeClientAdminWorker connected. Safe to press <Enter> (next category), mode <spec>, dump or shutdown.");      // shutdown not implemented
             while (true) {
                 final String s = systemIn.readLine(); // wait for user to press enter
                 if (nonNull(s) && s.equals("shutdown")) {
                     break;
                 }
+                if (nonNull(s) && (s.equals("dump") || s.startsWith("mode "))) {
+                    new AdminWorker(serverName, port, s).run();         // dump: write flight recording to disk. mode <spec>: select category or mix, e.g. mode J=3,P=1
+                    continue;
+                }
                 new AdminWorker(serverName, port).run();            // connect to socket with port set at startup
             }
         }
     }
+
+    /**
+     * Sends one admin line ("" = next category) and closes, the server does not answer.
+     * Shared by AdminWorker and JokeTraceReplayer.
+     */
+    static void sendCommand(final String server, final int port, final String command) {
+        try (
+                final Socket socket = new Socket(server, port);
+                final PrintStream toJokeServer = new PrintStream(socket.getOutputStream())      // reading from Server not necessary
+        ) {
+            System.out.println("ClientAdminWorker[" + port +"] connected! Sending " + (command.isEmpty() ? "ping to change mode." : command));
+            toJokeServer.println(command);     // PING
+            toJokeServer.flush();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 }
 
 class AdminWorker implements Runnable {
 
     private final String server;
     private final int port;
+    private final String command;
 
     public AdminWorker(String server, int port) {
+        this(server, port, "");      // empty line == mode switch
+    }
+
+    public AdminWorker(String server, int port, String command) {
         this.server = server;
         this.port = port;
+        this.command = command;
     }
 
     @Override
     public void run() {
-        try (
-                final Socket socket = new Socket(server, port);
-                final PrintStream toJokeServer = new PrintStream(socket.getOutputStream())      // reading from Server not necessary
-        ) {
-            System.out.println("ClientAdminWorker[" + port +"] connected! Sending ping to change mode.");
-            toJokeServer.println();     // PING
-            toJokeServer.flush();
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-        }
+        JokeClientAdmin.sendCommand(server, port, command);
     }
 }
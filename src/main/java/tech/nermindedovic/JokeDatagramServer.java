@@ -0,0 +1,164 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*-------------------------------------------------------------------------------
+UDP endpoint for single shot joke requests, on the same port number as the TCP joke server.
+Served from a Reactor: JokeServer runs one, JokeServerHost one per reactor (SO_REUSEPORT).
+
+    request datagram    <clientId> <nonce>
+    response datagram   <nonce> M:N
+
+No handshake, no teardown, no thread per request. Each time the channel is selected up
+to BATCH_SIZE datagrams are drained, answers them, then sends the answers back to back.
+
+Clients retry with the same nonce until they get an answer. The last nonce and response
+of every client are kept, so a retry (request or response datagram lost) is answered from
+that instead of advancing JokeClientPositions a second time.
+
+Every receive and send is recorded as UuidReadEvent / ResponseWriteEvent, same as the TCP paths.
+ */
+class JokeDatagramServer implements ReactorService, SelectionHandler {
+    static final int BATCH_SIZE = 32;
+    static final int MAX_DATAGRAM_BYTES = 512;
+
+    // last answered request per client, shared by all reactors as a client's datagrams may land on any of them
+    private static final Map<String, Reply> LAST_REPLY = new ConcurrentHashMap<>();
+
+    private final int port;
+    private final boolean reusePort;
+    private DatagramChannel channel;
+    private final ByteBuffer[] requests = new ByteBuffer[BATCH_SIZE];
+    private final SocketAddress[] senders = new SocketAddress[BATCH_SIZE];
+    private final UuidReadEvent[] reads = new UuidReadEvent[BATCH_SIZE];
+    private final String[] clientIds = new String[BATCH_SIZE];
+    private final ByteBuffer[] responses = new ByteBuffer[BATCH_SIZE];
+    private final String[] replies = new String[BATCH_SIZE];
+
+    JokeDatagramServer(final int port, final boolean reusePort) {
+        this.port = port;
+        this.reusePort = reusePort;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            requests[i] = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+            responses[i] = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+        }
+    }
+
+    @Override
+    public void register(final Reactor reactor) throws IOException {
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        if (reusePort) channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        channel.bind(new InetSocketAddress(port));
+        reactor.register(channel, SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public void ready(final SelectionKey key) {
+        try {
+            final int received = receiveBatch();
+            for (int i = 0; i < received; i++) {
+                try {
+                    answer(i);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    responses[i].clear().flip();        // not answered, the rest of the batch still is
+                }
+            }
+            sendBatch(received);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());     // e.g. ICMP port unreachable reported back, keep serving
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private int receiveBatch() throws IOException {
+        int received = 0;
+        while (received < BATCH_SIZE) {
+            requests[received].clear();
+            final UuidReadEvent uuidRead = new UuidReadEvent();
+            uuidRead.begin();
+            final SocketAddress sender = channel.receive(requests[received]);
+            if (sender == null) break;          // drained
+            uuidRead.end();
+            reads[received] = uuidRead;         // committed once the client id is parsed
+            senders[received++] = sender;
+        }
+        return received;
+    }
+
+    // fills responses[i], leaves it empty for malformed requests (client will time out)
+    private void answer(final int i) {
+        final ByteBuffer request = requests[i];
+        final ByteBuffer response = responses[i];
+        response.clear();
+        request.flip();
+
+        final String[] parts = StandardCharsets.UTF_8.decode(request).toString().trim().split(" ");
+        final long nonce;
+        try {
+            if (parts.length != 2) throw new NumberFormatException();
+            nonce = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            response.flip();
+            return;
+        }
+        final UuidReadEvent uuidRead = reads[i];
+        if (uuidRead.shouldCommit()) {
+            uuidRead.clientId = parts[0];
+            uuidRead.commit();
+        }
+        final Reply reply = replyFor(parts[0], nonce);
+        clientIds[i] = parts[0];
+        replies[i] = reply.response;
+        response.put((nonce + " " + reply.response).getBytes(StandardCharsets.UTF_8)).flip();
+    }
+
+    static Reply replyFor(final String clientId, final long nonce) {
+        return LAST_REPLY.compute(clientId, (id, last) ->
+                (last != null && last.nonce == nonce) ? last : new Reply(nonce, JokeServer.nextResponseFor(id)));    // retry: same answer, no advance
+    }
+
+    private void sendBatch(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (!responses[i].hasRemaining()) continue;
+            final ResponseWriteEvent responseWrite = new ResponseWriteEvent();
+            responseWrite.begin();
+            channel.send(responses[i], senders[i]);         // 0 when the send buffer is full: dropped, client retries
+            responseWrite.end();
+            if (responseWrite.shouldCommit()) {
+                responseWrite.clientId = clientIds[i];
+                responseWrite.response = replies[i];
+                responseWrite.commit();
+            }
+        }
+    }
+
+
+    static final class Reply {
+        final long nonce;
+        final String response;
+
+        Reply(final long nonce, final String response) {
+            this.nonce = nonce;
+            this.response = response;
+        }
+    }
+}
@@ -19,6 +19,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
    If two arguments are passed, process is started using secondary ports. Does not
    leverage data passed, as length of args only is important.
    File can be run standalone, does not require extra config.
+   Optional endpoints, off unless enabled (JokeServerHost always serves both):
+   > java -Djokeserver.subscriptions=true JokeServer     subscription port 4547 / 4548, see JokeSubscriptionServer
+   > java -Djokeserver.udp=true JokeServer               UDP on the joke port, see JokeDatagramServer
  */
 
 class JokeServerWorker extends Thread {
@@ -58,44 +61,47 @@ class JokeServerWorker extends Thread {
      */
 
     private void handleJokeServerRequest(final BufferedReader in,final PrintStream out) throws IOException {
+        final UuidReadEvent uuidRead = new UuidReadEvent();
+        uuidRead.begin();
         final String clientId = in.readLine();                                      // client pipes UUID:String through
-        final JokeClientPositions clientPositions = JokeServer.getServerStateMap().getOrDefault(clientId, new JokeClientPositions(clientId));  // retrieve client state if key has been seen else start new slot for this client
+        uuidRead.end();
+        if (uuidRead.shouldCommit()) {
+            uuidRead.clientId = clientId;
+            uuidRead.commit();
+        }
 
-        final boolean currModeIsJoke = JokeServer.isJokeMode();
-        final String response = createResponseUsingCurrMode(clientPositions, currModeIsJoke);      // should be in format M(mode):N(position for respective mode)
-        updateServerState(clientPositions, currModeIsJoke);
+        final String response = JokeServer.nextResponseFor(clientId);
 
         //send response + done
         System.out.println("SENDING SERVER RESPONSE=" + response + " - to client=" + clientId);
+        final ResponseWriteEvent responseWrite = new ResponseWriteEvent();
+        responseWrite.begin();
         out.println(response);
         out.flush();
-    }
-
-    // computes the response (its a key) that client will leverage once response arrives
-    private String createResponseUsingCurrMode(final JokeClientPositions clientPositions, final boolean currModeIsJoke) {
-        // returning string does not include updated version.
-        if (currModeIsJoke) {
-            return "J:" + clientPositions.getJokePosition();
-        } else {
-            return "P:" + clientPositions.getProverbPosition();
+        responseWrite.end();
+        if (responseWrite.shouldCommit()) {
+            responseWrite.clientId = clientId;
+            responseWrite.response = response;
+            responseWrite.commit();
         }
     }
 
-    // increment position based on curr mode and persist updated positions for client
-    private void updateServerState(final JokeClientPositions clientPositions, final boolean currModeIsJoke) {
-        if (currModeIsJoke) clientPositions.incrementJokePosition();
-        else { clientPositions.incrementProverbPosition(); }
-        JokeServer.getServerStateMap().put(clientPositions.getId(), clientPositions);
-    }
-
 
 }
 
 
+/**
+ * Positions of one client, one int per registered category, indexed like ContentCategories.
+ *
+ * Packed into a single int[] so the number of objects per client stays the same however many categories
+ * are registered. Approximate heap per client for positions alone (64-bit JVM, compressed oops):
+ *      2 categories:  24 (this) + 24 (int[2])  =  48 bytes
+ *     16 categories:  24 (this) + 80 (int[16]) = 104 bytes
+ * SERVER_STATE entry and client id String come on top and do not depend on the number of categories.
+ */
 class JokeClientPositions {
     private final String id;
-    private int jokePosition = 0;
-    private int proverbPosition = 0;
+    private final int[] positions = new int[ContentCategories.count()];
 
     public JokeClientPositions(String id) {
         this.id = id;
@@ -105,20 +111,18 @@ class JokeClientPositions {
         return id;
     }
 
-    public int getJokePosition() {
-        return jokePosition;
-    }
-
-    public void incrementJokePosition() {
-        jokePosition++;
+    public synchronized int getPosition(final int category) {
+        return positions[category];
     }
 
-    public int getProverbPosition() {
-        return proverbPosition;
-    }
-
-    public void incrementProverbPosition() {
-        proverbPosition++;
+    /**
+     * Hands out the current position for the category and moves past it, as one step so concurrent
+     * requests for the same client (reactors, UDP loops, subscription pushes) never share or lose a position.
+     *
+     * @return position before the increment
+     */
+    public synchronized int advance(final int category) {
+        return positions[category]++;
     }
 }
 
@@ -126,21 +130,19 @@ class JokeClientPositions {
 public class JokeServer {
 
     protected static final Map<String, JokeClientPositions> SERVER_STATE = new ConcurrentHashMap<>();
-    protected static AtomicBoolean jokeMode = new AtomicBoolean(true);
+    protected static volatile CategorySelection categorySelection = CategorySelection.single(0);       // first registered category (JOKE)
     protected static AtomicBoolean serverIsUp = new AtomicBoolean(true);
 
     public static boolean continueServer() {
         return serverIsUp.get();
     }
 
-    // best practice
-    public static boolean isJokeMode() {
-        return jokeMode.get();
+    static CategorySelection getCategorySelection() {
+        return categorySelection;
     }
 
-    // best practice
-    public static void setJokeMode(boolean updated) {
-        jokeMode.set(updated);
+    static void setCategorySelection(final CategorySelection updated) {
+        categorySelection = updated;
     }
 
     public static Map<String, JokeClientPositions> getServerStateMap() {
@@ -153,6 +155,85 @@ public class JokeServer {
 
 
 
+    /**
+     * Steps a-d of JokeServerWorker.handleJokeServerRequest, shared by every transport (worker threads,
+     * JokeServerHost reactors, UDP loops, subscription pushes) so they all advance client state the same way.
+     *
+     * @return response in format M:N (category code : position for that category)
+     */
+    static String nextResponseFor(final String clientId) {
+        final StateAdvanceEvent stateAdvance = new StateAdvanceEvent();
+        stateAdvance.begin();
+        final JokeClientPositions clientPositions = SERVER_STATE.computeIfAbsent(clientId, JokeClientPositions::new);  // retrieve client state if key has been seen else start new slot for this client
+
+        final int category = getCategorySelection().pick();        // index into the category registry
+        final int position = clientPositions.advance(category);     // read and increment in one step
+        final String response = ContentCategories.code(category) + ":" + position;
+
+        stateAdvance.end();
+        if (stateAdvance.shouldCommit()) {
+            stateAdvance.clientId = clientId;
+            stateAdvance.mode = ContentCategories.name(category);
+            stateAdvance.position = position;
+            stateAdvance.commit();
+        }
+        JokeTraceRecorder.recordRequest(clientId, ContentCategories.code(category).charAt(0), position);      // no-op unless tracing
+        return response;
+    }
+
+    /**
+     * Applies a single admin line to the joke server: "shutdown" stops the server, "dump" starts writing the
+     * flight recording to disk (see JokeServerRecording), "mode <spec>" selects a category or weighted mix
+     * (see CategorySelection), anything else moves on to the next category.
+     * Shared by JokeServerAdminWorker and the JokeServerHost reactors.
+     *
+     * @param s line sent by the admin client (null when the client closed without sending one)
+     * @return true if the server was told to shut down
+     */
+    static boolean applyAdminCommand(final String s) {
+        if (Objects.nonNull(s) && s.equals("shutdown")) {
+            JokeServer.setServerIsUp(false);                    // shut down server of joke server
+            new ShutdownEvent().commit();
+            JokeTraceRecorder.recordAdmin(TraceRecord.ADMIN_SHUTDOWN);
+            JokeTraceRecorder.stop();
+            return true;
+        }
+        if (Objects.nonNull(s) && s.equals("dump")) {
+            JokeTraceRecorder.recordAdmin(TraceRecord.ADMIN_DUMP);
+            JokeServerRecording.dumpAsync();                   // disk I/O, must not hold up a reactor
+            return false;
+        }
+        final boolean select = Objects.nonNull(s) && s.startsWith("mode ");
+        final CategorySelection requested;
+        try {
+            requested = select ? CategorySelection.parse(s.substring("mode ".length())) : null;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring admin command '" + s + "': " + e.getMessage());
+            return false;
+        }
+
+        final ModeSwitchEvent modeSwitch = new ModeSwitchEvent();
+        modeSwitch.begin();
+        final CategorySelection previous;
+        final CategorySelection updated;
+        synchronized (JokeServer.class) {                   // concurrent admin commands apply one after the other
+            previous = JokeServer.getCategorySelection();
+            updated = select ? requested : previous.next();
+            JokeServer.setCategorySelection(updated);
+            if (select) JokeTraceRecorder.recordAdminSelect(s);
+            else JokeTraceRecorder.recordAdmin(TraceRecord.ADMIN_SWITCH);
+            JokeSubscriptionServer.publishModeChange(updated);     // push to subscribers
+        }
+        modeSwitch.fromMode = previous.describe();
+        modeSwitch.toMode = updated.describe();
+        modeSwitch.commit();
+        System.out.println("MODE SWITCH. Server is in mode " + updated.describe());
+        return false;
+    }
+
+    static final String SUBSCRIPTIONS_PROPERTY = "jokeserver.subscriptions";
+    static final String UDP_PROPERTY = "jokeserver.udp";
+
     static final int JOKE_SERVER_DEFAULT_PORT = 4545;
     static final int JOKE_SERVER_SECONDARY_PORT = 4546;
 
@@ -166,12 +247,24 @@ public class JokeServer {
         final int concurrent_resp_limit = 6;             /* limit to number of requests that can be handled at once */
         final int jokeServerPort = (args.length >= 1) ? JOKE_SERVER_SECONDARY_PORT : JOKE_SERVER_DEFAULT_PORT;                    // 'secondary' passed? use secondary port for both jokeServer and thread handling AdminClient requests
         final int adminServerPort = (args.length >= 1) ? ADMIN_SERVER_SECONDARY_PORT : ADMIN_SERVER_DEFAULT_PORT;
+        final int subscriptionPort = (args.length >= 1) ? JokeSubscriptionServer.SUBSCRIPTION_SECONDARY_PORT : JokeSubscriptionServer.SUBSCRIPTION_DEFAULT_PORT;
+
 
+        // optional endpoints share one reactor. Bound before anything else starts, so a port in use ends the process here
+        final List<ReactorService> endpoints = new ArrayList<>();
+        if (Boolean.getBoolean(SUBSCRIPTIONS_PROPERTY)) endpoints.add(new JokeSubscriptionServer(subscriptionPort, false));
+        if (Boolean.getBoolean(UDP_PROPERTY)) endpoints.add(new JokeDatagramServer(jokeServerPort, false));          // UDP on the same port number
+        final Reactor reactor = endpoints.isEmpty() ? null : new Reactor(endpoints);
 
         final AdminLooper adminLooper = new AdminLooper(adminServerPort);
         final Thread adminServer = new Thread(adminLooper, "userThread:adminLooper");
         adminServer.start();
 
+        if (reactor != null) new Thread(reactor, "userThread:reactor").start();
+
+
+        JokeServerRecording.startIfEnabled();
+        JokeTraceRecorder.startIfEnabled();
 
         System.out.println("Nermin Dedovic'c Joke server starting up at port=" + jokeServerPort);
         System.out.println(); //EMPTY LINE
@@ -179,6 +272,12 @@ public class JokeServer {
         try (final ServerSocket serverSocket = new ServerSocket(jokeServerPort, concurrent_resp_limit)) {
             while (continueServer()) {
                 final Socket connectedSocket = serverSocket.accept();
+                final ConnectionAcceptedEvent accepted = new ConnectionAcceptedEvent();
+                if (accepted.shouldCommit()) {
+                    accepted.port = jokeServerPort;
+                    accepted.remoteAddress = String.valueOf(connectedSocket.getRemoteSocketAddress());
+                    accepted.commit();
+                }
                 new JokeServerWorker(connectedSocket).start();
             }
         }
@@ -211,6 +310,12 @@ class AdminLooper implements Runnable {
         try (final ServerSocket serverSocket = new ServerSocket(this.port, concurrent_limit)){
             while (adminControlSwitch.get()) {
                 final Socket connection = serverSocket.accept();
+                final ConnectionAcceptedEvent accepted = new ConnectionAcceptedEvent();
+                if (accepted.shouldCommit()) {
+                    accepted.port = port;
+                    accepted.remoteAddress = String.valueOf(connection.getRemoteSocketAddress());
+                    accepted.commit();
+                }
                 new JokeServerAdminWorker(connection, adminControlSwitch).start();
             }
         } catch (IOException e) {
@@ -241,14 +346,9 @@ class JokeServerAdminWorker extends Thread {
         ){
             final String s = in.readLine();         // <Enter> should == null if they want to switch mode. Else, check for shut down, allowing admin client to shut down server and this thread
 
-            if (Objects.nonNull(s) && s.equals("shutdown")) {
+            if (JokeServer.applyAdminCommand(s)) {
                 setAdminControlSwitch(false);                       // shut down instance of looper thread on next iteration
-                JokeServer.setServerIsUp(false);                    // shut down server of joke server
-                return;
             }
-            final boolean currModeIsJokeMode = JokeServer.isJokeMode();
-            JokeServer.setJokeMode(!currModeIsJokeMode);        // opposite mode
-            System.out.println("MODE SWITCH. Server is in mode " + (currModeIsJokeMode ? "PROVERB" : "JOKE"));     // if we went from J->P, first stmnt else : second stmnt.
         } catch (IOException e) {
             System.out.println(e.getMessage());
         } finally {
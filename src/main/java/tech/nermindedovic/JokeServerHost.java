@@ -0,0 +1,76 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.*;
+
+/*-------------------------------------------------------------------------------
+1. Java 11
+2. > javac JokeServerHost.java
+3. > java JokeServerHost
+   > java JokeServerHost secondary
+4. Runs the joke server, the admin server and the Inet server in a single process.
+   One Reactor is started per core; each reactor owns its own socket for every service
+   (joke, admin, Inet, subscriptions and UDP on the joke port), bound with SO_REUSEPORT
+   so the kernel spreads connections and datagrams across reactors without a shared
+   acceptor. That is one event loop per core in total.
+   If SO_REUSEPORT is not available on the platform, a single reactor is started.
+   Passing any argument uses the secondary joke/admin ports, same as JokeServer.
+ */
+
+public class JokeServerHost {
+
+    static final int INET_SERVER_PORT = 1565;
+
+    static final String REACTOR_THREAD_PREFIX = "userThread:reactor-";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int jokeServerPort = (args.length >= 1) ? JokeServer.JOKE_SERVER_SECONDARY_PORT : JokeServer.JOKE_SERVER_DEFAULT_PORT;
+        final int adminServerPort = (args.length >= 1) ? JokeServer.ADMIN_SERVER_SECONDARY_PORT : JokeServer.ADMIN_SERVER_DEFAULT_PORT;
+        final int subscriptionPort = (args.length >= 1) ? JokeSubscriptionServer.SUBSCRIPTION_SECONDARY_PORT : JokeSubscriptionServer.SUBSCRIPTION_DEFAULT_PORT;
+
+        final Map<Integer, ProtocolHandler> lineServices = new LinkedHashMap<>();
+        lineServices.put(jokeServerPort, clientId -> (clientId == null) ? null : JokeServer.nextResponseFor(clientId));
+        lineServices.put(adminServerPort, line -> {
+            JokeServer.applyAdminCommand(line);
+            return null;                                    // admin client does not read a response
+        });
+        lineServices.put(INET_SERVER_PORT, tech.nermindedovic.distsysjokeserver.JokeServer.protocolHandler());
+
+        JokeServerRecording.startIfEnabled();
+        JokeTraceRecorder.startIfEnabled();
+
+        final boolean reusePort = supportsReusePort();
+        final int reactorCount = reusePort ? Runtime.getRuntime().availableProcessors() : 1;
+
+        System.out.println("Nermin Dedovic's Joke server host starting up with " + reactorCount + " reactor(s)"
+                + (reusePort ? " using SO_REUSEPORT" : ""));
+        System.out.println("Joke port=" + jokeServerPort + ", admin port=" + adminServerPort + ", inet port=" + INET_SERVER_PORT
+                + ", subscription port=" + subscriptionPort);
+        System.out.println(); //EMPTY LINE
+
+        final List<Thread> reactors = new ArrayList<>();
+        for (int i = 0; i < reactorCount; i++) {
+            final List<ReactorService> services = new ArrayList<>();
+            for (final Map.Entry<Integer, ProtocolHandler> service : lineServices.entrySet()) {
+                services.add(new LineProtocolService(service.getKey(), service.getValue(), reusePort, service.getKey() == jokeServerPort));
+            }
+            services.add(new JokeSubscriptionServer(subscriptionPort, reusePort));
+            services.add(new JokeDatagramServer(jokeServerPort, reusePort));
+
+            final Thread reactor = new Thread(new Reactor(services), REACTOR_THREAD_PREFIX + i);
+            reactor.start();
+            reactors.add(reactor);
+        }
+        for (final Thread reactor : reactors) reactor.join();
+    }
+
+    static boolean supportsReusePort() {
+        try (final ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*-------------------------------------------------------------------------------
+Java Flight Recorder recording of the joke server events (ConnectionAcceptedEvent,
+UuidReadEvent, StateAdvanceEvent, ResponseWriteEvent, ModeSwitchEvent, ShutdownEvent).
+Events cost next to nothing while no recording is running, so they are always emitted.
+
+Start the server with -Djokeserver.recording=true to keep a continuous recording
+in a ring buffer (last RECORDING_MAX_AGE / RECORDING_MAX_SIZE worth of data).
+Admin client command "dump" writes the buffer to a .jfr file in the working directory,
+open it in JDK Mission Control or with `jfr print`.
+ */
+final class JokeServerRecording {
+    static final String ENABLED_PROPERTY = "jokeserver.recording";
+    static final Duration RECORDING_MAX_AGE = Duration.ofMinutes(10);
+    static final long RECORDING_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static Recording recording;
+
+    // dumps write up to RECORDING_MAX_SIZE to disk, kept off the admin worker / reactor thread that asked for it
+    private static final ExecutorService DUMPS = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "userThread:recordingDump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private JokeServerRecording() {
+    }
+
+    static synchronized void startIfEnabled() {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY) || recording != null) return;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));     // low overhead JDK settings (GC, locks, socket I/O > 20ms)
+        } catch (IOException | ParseException e) {
+            System.out.println("Could not load JFR configuration, recording disabled: " + e.getMessage());
+            return;
+        }
+        recording.setName("jokeserver");
+        recording.setToDisk(true);
+        recording.setMaxAge(RECORDING_MAX_AGE);
+        recording.setMaxSize(RECORDING_MAX_SIZE);
+        recording.enable(ConnectionAcceptedEvent.class);
+        recording.enable(UuidReadEvent.class);
+        recording.enable(StateAdvanceEvent.class);
+        recording.enable(ResponseWriteEvent.class);
+        recording.enable(ModeSwitchEvent.class);
+        recording.enable(ShutdownEvent.class);
+        recording.start();
+        System.out.println("Flight recording started, send admin command 'dump' to write it to disk");
+    }
+
+    /**
+     * Starts a dump on the dump thread and returns right away. Dumps requested back to back run one after the other.
+     *
+     * @return completes with the file written, null if no recording is running or the dump failed
+     */
+    static CompletableFuture<Path> dumpAsync() {
+        return CompletableFuture.supplyAsync(JokeServerRecording::dump, DUMPS);
+    }
+
+    /**
+     * Writes the current contents of the ring buffer to disk, recording keeps running.
+     *
+     * @return the file written, null if no recording is running or the dump failed
+     */
+    static synchronized Path dump() {
+        if (recording == null) {
+            System.out.println("No flight recording running, start server with -D" + ENABLED_PROPERTY + "=true");
+            return null;
+        }
+        final Path destination = Paths.get("jokeserver-" + System.currentTimeMillis() + ".jfr").toAbsolutePath();
+        try {
+            recording.dump(destination);
+            System.out.println("Flight recording dumped to " + destination);
+            return destination;
+        } catch (IOException e) {
+            System.out.println("Flight recording dump failed: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package tech.nermindedovic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*-------------------------------------------------------------------------------
+1. Java 11
+2. > javac JokeSubscriber.java
+3. > java JokeSubscriber
+   > java JokeSubscriber secondary
+   > java -Djokesubscriber.intervalMs=1000 JokeSubscriber
+4. Holds a subscription to the joke server instead of polling it. Prints a line
+   whenever an admin switches mode, and a joke/proverb every intervalMs if the
+   jokesubscriber.intervalMs property is set (0 = mode changes only).
+   Modes are reported as category specs (J, P or a weighted mix like J=3,P=1).
+   Passing any argument uses the secondary port. Needs JokeServerHost, or JokeServer
+   started with -Djokeserver.subscriptions=true.
+ */
+public class JokeSubscriber {
+    static final String INTERVAL_PROPERTY = "jokesubscriber.intervalMs";
+
+    public static void main(String[] args) {
+        final String serverName = "localhost";
+        final int port = (args.length >= 1) ? JokeSubscriptionServer.SUBSCRIPTION_SECONDARY_PORT : JokeSubscriptionServer.SUBSCRIPTION_DEFAULT_PORT;
+        final int jokeServerPort = (args.length >= 1) ? JokeClient.SECONDARY_SERVER_PORT : JokeClient.PRIMARY_SERVER_PORT;     // decides response format, same as JokeClient
+        final long intervalMs = Long.getLong(INTERVAL_PROPERTY, 0);
+
+        System.out.println("Running Nermin Dedovic's JokeSubscriber!");
+        System.out.println("Using server: " + serverName + ", Port: " + port);
+
+        final String username = "subscriber";
+        try {
+            subscribe(serverName, port, UUID.randomUUID().toString(), intervalMs, event -> {
+                if (event.startsWith("MODE:")) System.out.println("Server is in mode " + event.substring("MODE:".length()));
+                else System.out.println(JokeClient.render(event, username, jokeServerPort));
+            });
+        } catch (IOException e) {
+            System.out.println("Subscription ended = " + e.getMessage());
+        }
+    }
+
+    /**
+     * Blocks on the subscription, handing every pushed line (MODE:<spec> or M:N) to onEvent until the server closes it.
+     *
+     * @param intervalMs cadence of pushed items, 0 for mode changes only
+     */
+    public static void subscribe(final String serverName, final int port, final String clientId, final long intervalMs,
+                                 final Consumer<String> onEvent) throws IOException {
+        try (final Socket socket = new Socket(serverName, port);
+             final BufferedReader fromServer = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             final PrintStream toServer = new PrintStream(socket.getOutputStream()))
+        {
+            toServer.println("SUBSCRIBE " + clientId + " " + intervalMs);
+            toServer.flush();
+
+            String event;
+            while ((event = fromServer.readLine()) != null) {
+                onEvent.accept(event);
+            }
+        }
+    }
+}
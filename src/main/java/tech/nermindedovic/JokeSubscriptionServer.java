@@ -0,0 +1,271 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*-------------------------------------------------------------------------------
+Subscription (server push) endpoint, served from a Reactor: JokeServer runs one,
+JokeServerHost one per reactor (SO_REUSEPORT).
+
+Client holds a long-lived connection and sends one line:
+    SUBSCRIBE <uuid> [intervalMillis]
+Server answers with the current mode and then pushes:
+    MODE:<spec>         whenever an admin switches mode (JokeServerAdminWorker), spec as in CategorySelection
+    M:N                 every intervalMillis if one was requested (advances the client like a normal request)
+
+Fan-out: a mode event is encoded once into a read only buffer; every subscriber
+writes a duplicate() of it, so tens of thousands of subscribers share one copy.
+
+Slow consumers: bytes queued per connection are tracked against watermarks. Above
+HIGH_WATERMARK a subscriber is unwritable: item pushes are skipped (without advancing
+its position) and mode events collapse into "send latest mode once drained", since only
+the latest mode matters. Writable again once below LOW_WATERMARK. Queued bytes per
+connection are therefore bounded, no matter how far behind a client falls.
+ */
+public class JokeSubscriptionServer implements ReactorService {
+    static final int SUBSCRIPTION_DEFAULT_PORT = 4547;
+    static final int SUBSCRIPTION_SECONDARY_PORT = 4548;
+
+    static final int HIGH_WATERMARK = 64 * 1024;
+    static final int LOW_WATERMARK = 16 * 1024;
+    static final long MIN_ITEM_INTERVAL_MS = 100;
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_LINE_BYTES = 128;
+
+    private static final List<JokeSubscriptionServer> RUNNING = new CopyOnWriteArrayList<>();
+    private static volatile ByteBuffer latestModeEvent = encode(modeEvent(JokeServer.getCategorySelection()));
+
+    private final int port;
+    private final boolean reusePort;
+    private Reactor reactor;
+    private ServerSocketChannel listener;
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private final AtomicBoolean modeChanged = new AtomicBoolean(false);
+    private final ByteBuffer drain = ByteBuffer.allocate(MAX_LINE_BYTES);
+    private final PriorityQueue<Subscriber> itemSchedule = new PriorityQueue<>(Comparator.comparingLong((Subscriber s) -> s.nextItemAt));
+
+    JokeSubscriptionServer(final int port, final boolean reusePort) {
+        this.port = port;
+        this.reusePort = reusePort;
+    }
+
+    @Override
+    public void register(final Reactor reactor) throws IOException {
+        this.reactor = reactor;
+        this.listener = ServerSocketChannel.open();
+        if (reusePort) listener.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        listener.bind(new InetSocketAddress(port), BACKLOG);
+        reactor.register(listener, SelectionKey.OP_ACCEPT, key -> accept());
+        RUNNING.add(this);
+    }
+
+    /**
+     * Called by the admin path after the mode was switched. Encodes the event once and wakes every reactor serving subscriptions.
+     */
+    static void publishModeChange(final CategorySelection selection) {
+        latestModeEvent = encode(modeEvent(selection));
+        for (final JokeSubscriptionServer server : RUNNING) {
+            server.modeChanged.set(true);
+            server.reactor.wakeup();
+        }
+    }
+
+    static String modeEvent(final CategorySelection selection) {
+        return "MODE:" + selection;
+    }
+
+    private static ByteBuffer encode(final String line) {
+        return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Fans out a pending mode change and pushes the items that are due.
+     *
+     * @return nanos until the next item is due
+     */
+    @Override
+    public long poll(final long nowNanos) {
+        if (modeChanged.getAndSet(false)) fanOutModeChange();
+        pushDueItems(nowNanos);
+        final Subscriber next = itemSchedule.peek();
+        return (next == null) ? Long.MAX_VALUE : next.nextItemAt - nowNanos;
+    }
+
+    private void accept() {
+        try {
+            final SocketChannel channel = listener.accept();
+            if (channel == null) return;
+            final Subscriber subscriber = new Subscriber(channel);
+            subscriber.key = reactor.register(channel, SelectionKey.OP_READ, subscriber);
+            subscribers.add(subscriber);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void fanOutModeChange() {
+        for (final Subscriber subscriber : new ArrayList<>(subscribers)) subscriber.onModeChanged();     // copy: a failed write closes and removes
+    }
+
+    private void pushDueItems(final long now) {
+        while (!itemSchedule.isEmpty() && itemSchedule.peek().nextItemAt <= now) {
+            final Subscriber subscriber = itemSchedule.poll();
+            if (subscriber.closed) continue;
+            try {
+                if (subscriber.writable) subscriber.enqueue(encode(JokeServer.nextResponseFor(subscriber.clientId)));     // skipped while unwritable, position untouched
+            } catch (RuntimeException e) {
+                e.printStackTrace();                // this item is lost, the subscriber stays scheduled
+            }
+            subscriber.nextItemAt = Math.max(subscriber.nextItemAt + subscriber.intervalNanos, now);
+            itemSchedule.add(subscriber);
+        }
+    }
+
+    @Override
+    public void close() {
+        RUNNING.remove(this);
+        for (final Subscriber subscriber : new ArrayList<>(subscribers)) subscriber.close();
+        try {
+            listener.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+
+    /*
+    Per connection state. Only touched from the owning reactor thread.
+     */
+    final class Subscriber implements SelectionHandler {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer handshake = ByteBuffer.allocate(MAX_LINE_BYTES);
+
+        String clientId;            // null until SUBSCRIBE line arrived
+        long intervalNanos;
+        long nextItemAt;
+
+        final Deque<ByteBuffer> pending = new ArrayDeque<>();
+        int pendingBytes;
+        boolean writable = true;
+        boolean modeStale;          // a mode event was skipped while unwritable
+        boolean closed;
+
+        Subscriber(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void ready(final SelectionKey key) {
+            if (key.isReadable()) read();
+            if (key.isValid() && key.isWritable()) flush();
+        }
+
+        void read() {
+            try {
+                final ByteBuffer target = (clientId == null) ? handshake : drain;       // after SUBSCRIBE input is only drained
+                drain.clear();
+                final int read = channel.read(target);
+                if (read < 0) {
+                    close();
+                    return;
+                }
+                if (clientId == null) readSubscribeLine();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void readSubscribeLine() {
+            int end = -1;
+            for (int i = 0; i < handshake.position(); i++) {
+                if (handshake.get(i) == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) {
+                if (!handshake.hasRemaining()) close();         // no line within MAX_LINE_BYTES
+                return;
+            }
+            final String[] parts = new String(handshake.array(), 0, end, StandardCharsets.UTF_8).trim().split("\\s+");
+            if (parts.length < 2 || !parts[0].equals("SUBSCRIBE")) {
+                close();
+                return;
+            }
+            clientId = parts[1];
+            try {
+                final long intervalMs = (parts.length >= 3) ? Long.parseLong(parts[2]) : 0;
+                if (intervalMs > 0) {
+                    intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(MIN_ITEM_INTERVAL_MS, intervalMs));
+                    nextItemAt = System.nanoTime() + intervalNanos;
+                    itemSchedule.add(this);
+                }
+            } catch (NumberFormatException e) {
+                close();
+                return;
+            }
+            enqueue(latestModeEvent.duplicate());           // current mode right away
+        }
+
+        void onModeChanged() {
+            if (closed || clientId == null) return;         // not subscribed yet, gets latest mode on SUBSCRIBE
+            if (writable) enqueue(latestModeEvent.duplicate());
+            else modeStale = true;
+        }
+
+        void enqueue(final ByteBuffer event) {
+            pending.addLast(event);
+            pendingBytes += event.remaining();
+            flush();
+        }
+
+        void flush() {
+            try {
+                while (!pending.isEmpty()) {
+                    final ByteBuffer head = pending.peekFirst();
+                    pendingBytes -= channel.write(head);
+                    if (head.hasRemaining()) break;         // socket send buffer full
+                    pending.pollFirst();
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+            if (pendingBytes >= HIGH_WATERMARK) {
+                writable = false;
+            } else if (!writable && pendingBytes <= LOW_WATERMARK) {
+                writable = true;
+                if (modeStale) {
+                    modeStale = false;
+                    enqueue(latestModeEvent.duplicate());
+                }
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            subscribers.remove(this);
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
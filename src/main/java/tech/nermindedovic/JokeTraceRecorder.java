@@ -0,0 +1,116 @@
+package tech.nermindedovic;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*-------------------------------------------------------------------------------
+Request trace capture, replayed offline by JokeTraceReplayer.
+
+Start the server with -Djokeserver.trace=<file> to record every joke request
+(client id, mode, position handed out) and every admin command with its time offset.
+Records go through a bounded queue to a background writer, so the request path never
+waits on disk. If the writer falls behind, records are dropped and counted instead.
+File format: see TraceFormat.
+
+One writer per process, only exists while tracing is enabled.
+ */
+final class JokeTraceRecorder implements Runnable {
+    static final String TRACE_PROPERTY = "jokeserver.trace";
+    static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private static volatile JokeTraceRecorder instance;
+
+    private final BlockingQueue<TraceRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private JokeTraceRecorder(final Path file, final String initialSelection) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), WRITE_BUFFER_BYTES));
+        TraceFormat.writeHeader(out, System.currentTimeMillis(), initialSelection);
+        this.writer = new Thread(this, "userThread:traceWriter");
+        this.writer.setDaemon(true);
+    }
+
+    static synchronized void startIfEnabled() {
+        final String file = System.getProperty(TRACE_PROPERTY);
+        if (file == null || instance != null) return;
+        try {
+            final JokeTraceRecorder recorder = new JokeTraceRecorder(Paths.get(file), JokeServer.getCategorySelection().toString());
+            recorder.writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(JokeTraceRecorder::stop));
+            instance = recorder;
+            System.out.println("Recording request trace to " + Paths.get(file).toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Could not open trace file, tracing disabled: " + e.getMessage());
+        }
+    }
+
+    static void recordRequest(final String clientId, final char mode, final int position) {
+        final JokeTraceRecorder recorder = instance;
+        if (recorder != null) recorder.offer(TraceRecord.request(recorder.offsetMicros(), clientId, mode, position));
+    }
+
+    static void recordAdmin(final byte command) {
+        final JokeTraceRecorder recorder = instance;
+        if (recorder != null) recorder.offer(TraceRecord.admin(recorder.offsetMicros(), command));
+    }
+
+    static void recordAdminSelect(final String commandLine) {
+        final JokeTraceRecorder recorder = instance;
+        if (recorder != null) recorder.offer(TraceRecord.adminSelect(recorder.offsetMicros(), commandLine));
+    }
+
+    // drains what is queued and closes the file. Safe to call more than once
+    static synchronized void stop() {
+        final JokeTraceRecorder recorder = instance;
+        if (recorder == null) return;
+        instance = null;
+        recorder.running = false;
+        try {
+            recorder.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (recorder.dropped.get() > 0) System.out.println("Trace writer fell behind, dropped " + recorder.dropped.get() + " records");
+    }
+
+    private long offsetMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private void offer(final TraceRecord record) {
+        if (!queue.offer(record)) dropped.incrementAndGet();        // never block the request path
+    }
+
+    @Override
+    public void run() {
+        final List<TraceRecord> batch = new ArrayList<>(1024);
+        try (out) {
+            while (running || !queue.isEmpty()) {
+                final TraceRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, 1023);
+                for (final TraceRecord record : batch) TraceFormat.write(out, record);
+                batch.clear();
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Trace writer stopped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package tech.nermindedovic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*-------------------------------------------------------------------------------
+1. Java 11
+2. > javac JokeTraceReplayer.java
+3. > java JokeTraceReplayer trace.bin
+   > java JokeTraceReplayer trace.bin 10
+   > java JokeTraceReplayer trace.bin 10 otherhost
+   > java JokeTraceReplayer trace.bin 10 localhost secondary
+4. Replays a trace recorded with -Djokeserver.trace=<file> against a running
+   JokeServerHost (or JokeServer started with -Djokeserver.subscriptions=true) at 1x
+   or N x the recorded speed, then reports throughput, latency percentiles and how
+   many responses matched the recorded mode:position.
+   A fourth argument targets the secondary joke/admin/subscription ports, same as the
+   other programs. Positions only match against a freshly started server, as recorded
+   clients pick up where the server state left them.
+   Requests of one client are replayed in order on the same thread. Before an admin
+   mode switch the replayer waits for earlier requests to finish and after it waits for
+   the switch to be pushed over the subscription endpoint, so requests on either side of
+   the switch see the same mode as when recorded. shutdown/dump commands are not replayed.
+   While a weighted mix is selected the category of each request is random, so responses
+   in that stretch are not expected to match.
+ */
+public class JokeTraceReplayer {
+    static final int STRIPES = 8;
+    static final long MODE_SWITCH_TIMEOUT_MS = 2000;
+
+    private final String serverName;
+    private final int jokeServerPort;
+    private final int adminServerPort;
+    private final int subscriptionPort;
+
+    private String serverMode;          // latest MODE:<spec> pushed by the server
+    private int modeEvents;             // MODE events seen so far, guarded by this
+
+    JokeTraceReplayer(final String serverName, final int jokeServerPort, final int adminServerPort, final int subscriptionPort) {
+        this.serverName = serverName;
+        this.jokeServerPort = jokeServerPort;
+        this.adminServerPort = adminServerPort;
+        this.subscriptionPort = subscriptionPort;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java JokeTraceReplayer <trace file> [speed] [server] [secondary]");
+            return;
+        }
+        final Path trace = Paths.get(args[0]);
+        final double speed = (args.length >= 2) ? Double.parseDouble(args[1]) : 1.0;
+        final String serverName = (args.length >= 3) ? args[2] : "localhost";
+        final boolean secondary = args.length >= 4;
+        final int jokeServerPort = secondary ? JokeServer.JOKE_SERVER_SECONDARY_PORT : JokeServer.JOKE_SERVER_DEFAULT_PORT;
+        final int adminServerPort = secondary ? JokeServer.ADMIN_SERVER_SECONDARY_PORT : JokeServer.ADMIN_SERVER_DEFAULT_PORT;
+        final int subscriptionPort = secondary ? JokeSubscriptionServer.SUBSCRIPTION_SECONDARY_PORT : JokeSubscriptionServer.SUBSCRIPTION_DEFAULT_PORT;
+
+        System.out.println("Replaying " + trace + " at " + speed + "x against " + serverName + ":" + jokeServerPort);
+        final JokeTraceReplayer replayer = new JokeTraceReplayer(serverName, jokeServerPort, adminServerPort, subscriptionPort);
+        System.out.println(replayer.replay(trace, speed));
+    }
+
+    Report replay(final Path trace, final double speed) throws IOException, InterruptedException {
+        final String[] initialSelection = new String[1];
+        final List<TraceRecord> records = TraceFormat.readAll(trace, initialSelection);
+        final long requestCount = records.stream().filter(r -> r.type == TraceRecord.REQUEST).count();
+        final Report report = new Report((int) requestCount);
+
+        final Socket subscription = subscribeToModeChanges();
+        final ExecutorService[] stripes = new ExecutorService[STRIPES];
+        for (int i = 0; i < STRIPES; i++) stripes[i] = Executors.newSingleThreadExecutor();
+
+        try {
+            if (!awaitModeEvent(0)) throw new IOException("no mode received from subscription endpoint");
+            if (!initialSelection[0].equals(currentServerMode())) {           // server must start in the recorded mode
+                sendAdminCommand("mode " + initialSelection[0]);
+                if (!awaitModeEvent(1) || !initialSelection[0].equals(currentServerMode())) {
+                    throw new IOException("server did not switch to recorded initial mode " + initialSelection[0]);
+                }
+            }
+
+            final List<Future<?>> inFlight = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (final TraceRecord record : records) {
+                final long due = start + (long) (record.offsetMicros * 1000 / speed);
+                final long lag = System.nanoTime() - due;
+                if (lag > 0) report.maxDispatchLagNanos = Math.max(report.maxDispatchLagNanos, lag);
+                for (long early = -lag; early > 0; early = due - System.nanoTime()) {
+                    LockSupport.parkNanos(early);           // may return early (spurious wakeup, interrupt)
+                }
+
+                if (record.type == TraceRecord.REQUEST) {
+                    final ExecutorService stripe = stripes[Math.floorMod(record.clientId.hashCode(), STRIPES)];
+                    inFlight.add(stripe.submit(() -> replayRequest(record, report)));
+                } else if (record.command == TraceRecord.ADMIN_SWITCH || record.command == TraceRecord.ADMIN_SELECT) {
+                    awaitAll(inFlight);
+                    final int seen = modeEventCount();
+                    sendAdminCommand((record.command == TraceRecord.ADMIN_SELECT) ? record.commandLine : "");
+                    if (!awaitModeEvent(seen)) System.out.println("Mode switch was not confirmed within " + MODE_SWITCH_TIMEOUT_MS + "ms");
+                    report.modeSwitches++;
+                } else {
+                    report.skippedAdminCommands++;
+                }
+            }
+            awaitAll(inFlight);
+            report.wallNanos = System.nanoTime() - start;
+        } finally {
+            subscription.close();                           // ends the mode listener thread
+            for (final ExecutorService stripe : stripes) stripe.shutdownNow();
+        }
+        return report;
+    }
+
+    private void replayRequest(final TraceRecord record, final Report report) {
+        final long begin = System.nanoTime();
+        try (final Socket socket = new Socket(serverName, jokeServerPort);
+             final BufferedReader fromJokeServer = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             final PrintStream toJokeServer = new PrintStream(socket.getOutputStream()))
+        {
+            toJokeServer.println(record.clientId);
+            toJokeServer.flush();
+            final String response = fromJokeServer.readLine();
+            report.latencies[report.completed.getAndIncrement()] = System.nanoTime() - begin;
+            if ((record.mode + ":" + record.position).equals(response)) report.matched.incrementAndGet();
+            else report.mismatched.incrementAndGet();
+        } catch (IOException e) {
+            report.errors.incrementAndGet();
+        }
+    }
+
+    private void sendAdminCommand(final String command) {
+        JokeClientAdmin.sendCommand(serverName, adminServerPort, command);
+    }
+
+    private Socket subscribeToModeChanges() throws IOException {
+        final Socket socket = new Socket(serverName, subscriptionPort);
+        final PrintStream toServer = new PrintStream(socket.getOutputStream());
+        toServer.println("SUBSCRIBE replayer-" + System.nanoTime());
+        toServer.flush();
+        final Thread listener = new Thread(() -> {
+            try (final BufferedReader fromServer = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                String event;
+                while ((event = fromServer.readLine()) != null) {
+                    if (!event.startsWith("MODE:")) continue;
+                    synchronized (this) {
+                        serverMode = event.substring("MODE:".length());
+                        modeEvents++;
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                // socket closed once replay is done
+            }
+        }, "userThread:replayModeListener");
+        listener.setDaemon(true);
+        listener.start();
+        return socket;
+    }
+
+    private synchronized String currentServerMode() {
+        return serverMode;
+    }
+
+    private synchronized int modeEventCount() {
+        return modeEvents;
+    }
+
+    // waits until more than `seen` MODE events arrived
+    private synchronized boolean awaitModeEvent(final int seen) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + MODE_SWITCH_TIMEOUT_MS;
+        while (modeEvents <= seen) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    private static void awaitAll(final List<Future<?>> futures) throws InterruptedException {
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                System.out.println("Replay task failed: " + e.getCause());
+            }
+        }
+        futures.clear();
+    }
+
+
+    static final class Report {
+        final long[] latencies;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger matched = new AtomicInteger();
+        final AtomicInteger mismatched = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        int modeSwitches;
+        int skippedAdminCommands;
+        long maxDispatchLagNanos;
+        long wallNanos;
+
+        Report(final int requests) {
+            this.latencies = new long[requests];
+        }
+
+        double percentileMillis(final long[] sorted, final double percentile) {
+            if (sorted.length == 0) return 0;
+            final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            final long[] sorted = Arrays.copyOf(latencies, completed.get());
+            Arrays.sort(sorted);
+            final double seconds = wallNanos / 1_000_000_000.0;
+            return String.format("requests=%d errors=%d matched=%d mismatched=%d modeSwitches=%d skippedAdmin=%d%n"
+                            + "wall=%.3fs throughput=%.1f req/s maxDispatchLag=%.3fms%n"
+                            + "latency ms p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f",
+                    latencies.length, errors.get(), matched.get(), mismatched.get(), modeSwitches, skippedAdminCommands,
+                    seconds, (seconds > 0) ? completed.get() / seconds : 0, maxDispatchLagNanos / 1_000_000.0,
+                    percentileMillis(sorted, 50), percentileMillis(sorted, 90), percentileMillis(sorted, 99),
+                    percentileMillis(sorted, 99.9), percentileMillis(sorted, 100));
+        }
+    }
+}
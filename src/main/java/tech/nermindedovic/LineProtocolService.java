@@ -0,0 +1,195 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/*-------------------------------------------------------------------------------
+One TCP port served by a ProtocolHandler on a Reactor. Accepts, reads the request
+line, lets the handler answer it and writes the response back, all without blocking.
+Handlers that answer on another thread (Inet lookups) hand the response back through
+Reactor.execute; the connection sits with no interest ops until then.
+For the joke port (clientEvents) the read of the client id and the write of the
+response are recorded as UuidReadEvent / ResponseWriteEvent, same as JokeServerWorker.
+ */
+class LineProtocolService implements ReactorService {
+    private static final int BACKLOG = 128;
+    private static final int MAX_LINE_BYTES = 1024;
+
+    private final int port;
+    private final ProtocolHandler handler;
+    private final boolean reusePort;
+    private final boolean clientEvents;
+    private Reactor reactor;
+    private ServerSocketChannel listener;
+
+    /**
+     * @param clientEvents request lines are client ids (joke port): emit UuidReadEvent and ResponseWriteEvent
+     */
+    LineProtocolService(final int port, final ProtocolHandler handler, final boolean reusePort, final boolean clientEvents) {
+        this.port = port;
+        this.handler = handler;
+        this.reusePort = reusePort;
+        this.clientEvents = clientEvents;
+    }
+
+    @Override
+    public void register(final Reactor reactor) throws IOException {
+        this.reactor = reactor;
+        this.listener = ServerSocketChannel.open();
+        if (reusePort) listener.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        listener.bind(new InetSocketAddress(port), BACKLOG);
+        reactor.register(listener, SelectionKey.OP_ACCEPT, key -> accept());
+    }
+
+    @Override
+    public void close() {
+        try {
+            listener.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void accept() {
+        try {
+            final SocketChannel channel = listener.accept();
+            if (channel == null) return;        // another reactor's listener won the race
+            final ConnectionAcceptedEvent accepted = new ConnectionAcceptedEvent();
+            if (accepted.shouldCommit()) {
+                accepted.port = port;
+                accepted.remoteAddress = String.valueOf(channel.getRemoteAddress());
+                accepted.commit();
+            }
+            final Connection connection = new Connection(channel);
+            connection.key = reactor.register(channel, SelectionKey.OP_READ, connection);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+
+    /*
+    Per connection state: its in/out buffers. Only touched from the reactor thread.
+     */
+    final class Connection implements SelectionHandler {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE_BYTES);
+        ByteBuffer out;
+        SelectionKey key;
+        UuidReadEvent uuidRead;             // from the first read until the line is complete, clientEvents only
+        ResponseWriteEvent responseWrite;   // from the first write until the response is out, clientEvents only
+        String line;
+
+        Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void ready(final SelectionKey key) {
+            if (key.isReadable()) read();
+            else if (key.isWritable()) write();
+        }
+
+        private void read() {
+            try {
+                if (clientEvents && uuidRead == null) {
+                    uuidRead = new UuidReadEvent();
+                    uuidRead.begin();
+                }
+                final int read = channel.read(in);
+                final int lineEnd = lineEnd();
+                if (lineEnd < 0 && read >= 0 && in.hasRemaining()) return;       // rest of the line still on its way
+
+                line = takeLine(lineEnd);
+                if (uuidRead != null) {
+                    uuidRead.end();
+                    if (uuidRead.shouldCommit()) {
+                        uuidRead.clientId = line;
+                        uuidRead.commit();
+                    }
+                }
+                final CompletableFuture<String> response = handler.handleAsync(line).toCompletableFuture();
+                if (response.isDone()) {
+                    respond(response.join());
+                    return;
+                }
+                key.interestOps(0);                                 // nothing to do until the handler answers
+                response.whenComplete((answer, failure) -> reactor.execute(() -> {
+                    if (failure != null) System.out.println(failure.getMessage());
+                    respond((failure == null) ? answer : null);
+                }));
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+                close();
+            }
+        }
+
+        private void respond(final String response) {
+            if (!key.isValid()) return;                             // closed while the handler was busy (shutdown)
+            if (response == null) {
+                close();
+                return;
+            }
+            out = ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8));
+            if (clientEvents) {
+                responseWrite = new ResponseWriteEvent();
+                responseWrite.begin();
+                responseWrite.response = response;
+            }
+            write();
+        }
+
+        private void write() {
+            try {
+                channel.write(out);
+                if (out.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);         // socket buffer full, finish once writable
+                    return;
+                }
+                if (responseWrite != null) {
+                    responseWrite.end();
+                    if (responseWrite.shouldCommit()) {
+                        responseWrite.clientId = line;
+                        responseWrite.commit();
+                    }
+                }
+                close();                                            // one request per connection, same as the worker threads
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                close();
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        // index of '\n' in what has been read so far, -1 if not there yet
+        int lineEnd() {
+            for (int i = 0; i < in.position(); i++) {
+                if (in.get(i) == '\n') return i;
+            }
+            return -1;
+        }
+
+        // same semantics as BufferedReader.readLine(): terminator dropped, null if nothing came before EOF
+        String takeLine(final int lineEnd) {
+            int end = (lineEnd < 0) ? in.position() : lineEnd;
+            if (lineEnd < 0 && end == 0) return null;
+            if (end > 0 && in.get(end - 1) == '\r') end--;
+            return new String(in.array(), 0, end, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Admin switched the category selection (JokeServer.applyAdminCommand).
+ */
+@Name("tech.nermindedovic.ModeSwitch")
+@Label("Mode Switch")
+@Category("Joke Server")
+@StackTrace(false)
+class ModeSwitchEvent extends Event {
+    @Label("From Mode")
+    String fromMode;
+
+    @Label("To Mode")
+    String toMode;
+}
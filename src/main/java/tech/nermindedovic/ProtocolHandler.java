@@ -0,0 +1,29 @@
+package tech.nermindedovic;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A line based request/response protocol served by JokeServerHost.
+ * Every service in this repo reads a single line from the client, answers and closes the connection,
+ * so a handler only needs to turn that line into the response text.
+ */
+@FunctionalInterface
+public interface ProtocolHandler {
+
+    /**
+     * @param line request line without its terminator (null if the client closed before sending one)
+     * @return response to write back, host terminates it with a newline. null closes without responding
+     */
+    String handle(String line);
+
+    /**
+     * What the host actually calls. Handlers that may block (DNS, disk) override this to answer on
+     * their own threads, so the reactor keeps serving other connections until the response is ready.
+     *
+     * @return stage completing with the same value handle would return
+     */
+    default CompletionStage<String> handleAsync(final String line) {
+        return CompletableFuture.completedFuture(handle(line));
+    }
+}
@@ -0,0 +1,125 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/*-------------------------------------------------------------------------------
+Single threaded event loop shared by every ReactorService it was built with.
+JokeServerHost runs one per core (each service bound with SO_REUSEPORT), JokeServer
+runs one for its subscription and UDP endpoints next to the worker threads.
+
+Each iteration: select until a channel is ready, a service's timed work is due or
+another thread handed in a task through execute(); run those tasks; dispatch the
+selected keys to their SelectionHandler; let every service do its timed work.
+A RuntimeException from a task, handler or poll is logged and the loop keeps going:
+a failing connection is closed, a service's own channel (listener, UDP) stays open.
+ */
+class Reactor implements Runnable {
+    private static final long SELECT_TIMEOUT_MS = 500;     // how often we look at JokeServer.continueServer()
+
+    private final Selector selector;
+    private final List<ReactorService> services;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    Reactor(final List<ReactorService> services) throws IOException {
+        this.selector = Selector.open();
+        this.services = services;
+        for (final ReactorService service : services) service.register(this);
+    }
+
+    /**
+     * Registers a channel of one of this reactor's services. Reactor thread (or register) only.
+     */
+    SelectionKey register(final SelectableChannel channel, final int ops, final SelectionHandler handler) throws IOException {
+        channel.configureBlocking(false);
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * Runs the task on the reactor thread at the start of its next iteration. Safe from any thread.
+     */
+    void execute(final Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Ends the current select early so the services' poll runs. Safe from any thread.
+     */
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long timeoutMs = SELECT_TIMEOUT_MS;
+        try {
+            while (JokeServer.continueServer()) {
+                selector.select(timeoutMs);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        ((SelectionHandler) key.attachment()).ready(key);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        if (key.channel() instanceof SocketChannel) closeKey(key);     // one client connection, drop just that one
+                    }
+                }
+
+                final long now = System.nanoTime();
+                long untilDue = TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MS);
+                for (final ReactorService service : services) {
+                    try {
+                        untilDue = Math.min(untilDue, service.poll(now));
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                timeoutMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(untilDue));          // 0 would block forever
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            close();
+        }
+    }
+
+    private static void closeKey(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void close() {
+        for (final ReactorService service : services) service.close();
+        for (final SelectionKey key : selector.keys()) closeKey(key);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package tech.nermindedovic;
+
+import java.io.IOException;
+
+/**
+ * Something served from a Reactor's event loop: a TCP line protocol, the subscription endpoint, the UDP endpoint.
+ * One instance per reactor, only touched from that reactor's thread unless stated otherwise.
+ */
+interface ReactorService {
+
+    /**
+     * Opens the service's channels and registers them with the reactor. Called once, before the loop starts.
+     */
+    void register(Reactor reactor) throws IOException;
+
+    /**
+     * Timed work, run once per loop iteration after the selected keys were handled.
+     *
+     * @param nowNanos System.nanoTime() of this iteration
+     * @return nanos until this service next has timed work, Long.MAX_VALUE if none
+     */
+    default long poll(final long nowNanos) {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Closes what register opened. Connections still registered are closed by the reactor.
+     */
+    void close();
+}
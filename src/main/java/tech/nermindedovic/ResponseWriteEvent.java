@@ -0,0 +1,22 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Write of the M:N response back to the client, over TCP or UDP.
+ */
+@Name("tech.nermindedovic.ResponseWrite")
+@Label("Response Write")
+@Category("Joke Server")
+@StackTrace(false)
+class ResponseWriteEvent extends Event {
+    @Label("Client Id")
+    String clientId;
+
+    @Label("Response")
+    String response;
+}
@@ -0,0 +1,15 @@
+package tech.nermindedovic;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Attached to every key registered with a Reactor. Called on the reactor thread when the key is selected.
+ */
+@FunctionalInterface
+interface SelectionHandler {
+
+    /**
+     * @param key selected key, valid when called. Handlers must not block and must catch their own IO errors
+     */
+    void ready(SelectionKey key);
+}
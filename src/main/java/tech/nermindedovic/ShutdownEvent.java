@@ -0,0 +1,15 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+Admin told the server to shut down.
+ */
+@Name("tech.nermindedovic.Shutdown")
+@Label("Shutdown")
+@Category("Joke Server")
+class ShutdownEvent extends Event {
+}
@@ -0,0 +1,28 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Lookup and advance of a client's position in JokeServer.nextResponseFor, shared by every transport.
+ */
+@Name("tech.nermindedovic.StateAdvance")
+@Label("Client State Lookup/Advance")
+@Description("Lookup of the client positions in SERVER_STATE and increment of the position for the current mode")
+@Category("Joke Server")
+@StackTrace(false)
+class StateAdvanceEvent extends Event {
+    @Label("Client Id")
+    String clientId;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Position")
+    @Description("Position handed to the client, before it was incremented")
+    int position;
+}
@@ -0,0 +1,131 @@
+package tech.nermindedovic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*-------------------------------------------------------------------------------
+Reading and writing of the binary request trace (see JokeTraceRecorder, JokeTraceReplayer).
+
+File format (big endian, offsets and positions as unsigned varints):
+    header   int magic 'JKTR', byte version, long start epoch millis, writeUTF initial category selection
+    request  byte 1, varint offset micros, client id, byte category code, varint position
+    admin    byte 2, varint offset micros, byte command (+ writeUTF command line for ADMIN_SELECT)
+    client id: byte 0 + 16 byte UUID, or byte 1 + writeUTF for anything that is not a UUID
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x4A4B5452;        // JKTR
+    static final byte VERSION = 2;
+
+    private TraceFormat() {
+    }
+
+    static void writeHeader(final DataOutputStream out, final long startEpochMillis, final String initialSelection) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(startEpochMillis);
+        out.writeUTF(initialSelection);
+    }
+
+    static void write(final DataOutputStream out, final TraceRecord record) throws IOException {
+        out.writeByte(record.type);
+        writeVarLong(out, record.offsetMicros);
+        if (record.type == TraceRecord.REQUEST) {
+            writeClientId(out, record.clientId);
+            out.writeByte(record.mode);
+            writeVarLong(out, record.position);
+        } else {
+            out.writeByte(record.command);
+            if (record.command == TraceRecord.ADMIN_SELECT) out.writeUTF(record.commandLine);
+        }
+    }
+
+    /**
+     * @return initial category selection recorded in the header
+     */
+    static String readHeader(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a joke server trace");
+        final byte version = in.readByte();
+        if (version != VERSION) throw new IOException("unsupported trace version " + version);
+        in.readLong();                                  // start time, informational
+        return in.readUTF();
+    }
+
+    /**
+     * @return next record, null at end of trace
+     */
+    static TraceRecord read(final DataInputStream in) throws IOException {
+        final int type = in.read();
+        if (type < 0) return null;
+        final long offsetMicros = readVarLong(in);
+        if (type == TraceRecord.REQUEST) {
+            final String clientId = readClientId(in);
+            final char mode = (char) in.readByte();
+            return TraceRecord.request(offsetMicros, clientId, mode, (int) readVarLong(in));
+        }
+        if (type == TraceRecord.ADMIN) {
+            final byte command = in.readByte();
+            if (command == TraceRecord.ADMIN_SELECT) return TraceRecord.adminSelect(offsetMicros, in.readUTF());
+            return TraceRecord.admin(offsetMicros, command);
+        }
+        throw new IOException("corrupt trace, unknown record type " + type);
+    }
+
+    static List<TraceRecord> readAll(final Path file, final String[] initialSelection) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            initialSelection[0] = readHeader(in);
+            final List<TraceRecord> records = new ArrayList<>();
+            TraceRecord record;
+            while ((record = read(in)) != null) records.add(record);
+            return records;
+        } catch (EOFException e) {
+            throw new IOException("trace truncated", e);
+        }
+    }
+
+    private static void writeClientId(final DataOutputStream out, final String clientId) throws IOException {
+        try {
+            final UUID uuid = UUID.fromString(clientId);
+            if (uuid.toString().equals(clientId)) {         // fromString is lenient, only take canonical form
+                out.writeByte(0);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // not a UUID, written as text below
+        }
+        out.writeByte(1);
+        out.writeUTF(clientId);
+    }
+
+    private static String readClientId(final DataInputStream in) throws IOException {
+        if (in.readByte() == 0) return new UUID(in.readLong(), in.readLong()).toString();
+        return in.readUTF();
+    }
+
+    private static void writeVarLong(final DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("corrupt trace, varint too long");
+    }
+}
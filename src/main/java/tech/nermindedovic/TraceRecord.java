@@ -0,0 +1,45 @@
+package tech.nermindedovic;
+
+/*
+One entry of a request trace: a joke request or an admin command, with its time offset
+from the start of the trace. Written by JokeTraceRecorder, read back by TraceFormat.
+ */
+final class TraceRecord {
+    static final byte REQUEST = 1;
+    static final byte ADMIN = 2;
+
+    static final byte ADMIN_SWITCH = 0;
+    static final byte ADMIN_SHUTDOWN = 1;
+    static final byte ADMIN_DUMP = 2;
+    static final byte ADMIN_SELECT = 3;      // "mode <spec>"
+
+    final byte type;
+    final long offsetMicros;
+    final String clientId;      // requests only
+    final char mode;            // requests only
+    final int position;         // requests only
+    final byte command;         // admin only
+    final String commandLine;   // ADMIN_SELECT only
+
+    private TraceRecord(byte type, long offsetMicros, String clientId, char mode, int position, byte command, String commandLine) {
+        this.type = type;
+        this.offsetMicros = offsetMicros;
+        this.clientId = clientId;
+        this.mode = mode;
+        this.position = position;
+        this.command = command;
+        this.commandLine = commandLine;
+    }
+
+    static TraceRecord request(final long offsetMicros, final String clientId, final char mode, final int position) {
+        return new TraceRecord(REQUEST, offsetMicros, clientId, mode, position, (byte) 0, null);
+    }
+
+    static TraceRecord admin(final long offsetMicros, final byte command) {
+        return new TraceRecord(ADMIN, offsetMicros, null, (char) 0, 0, command, null);
+    }
+
+    static TraceRecord adminSelect(final long offsetMicros, final String commandLine) {
+        return new TraceRecord(ADMIN, offsetMicros, null, (char) 0, 0, ADMIN_SELECT, commandLine);
+    }
+}
@@ -0,0 +1,21 @@
+package tech.nermindedovic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Read of the client id: JokeServerWorker, the joke port of a JokeServerHost reactor, or a JokeDatagramServer receive.
+ */
+@Name("tech.nermindedovic.UuidRead")
+@Label("Client UUID Read")
+@Description("Time spent waiting for the client to send its UUID")
+@Category("Joke Server")
+@StackTrace(false)
+class UuidReadEvent extends Event {
+    @Label("Client Id")
+    String clientId;
+}
@@ -1,6 +1,9 @@
 package tech.nermindedovic.distsysjokeserver;
 
+import tech.nermindedovic.ProtocolHandler;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
@@ -8,6 +11,12 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class Worker extends Thread {
     final Socket socket;
@@ -79,6 +88,44 @@ class Worker extends Thread {
 }
 
 public class JokeServer {
+
+    static final int LOOKUP_THREADS = 4;
+
+    // DNS queries block for as long as the resolver takes, kept off the JokeServerHost reactors
+    private static final ExecutorService LOOKUPS = Executors.newFixedThreadPool(LOOKUP_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "userThread:inetLookup-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Inet lookup as a ProtocolHandler, so JokeServerHost can serve it next to the joke and admin services.
+     * The blocking DNS query runs on a small lookup pool; the reactor writes the answer once it completes.
+     */
+    public static ProtocolHandler protocolHandler() {
+        return new ProtocolHandler() {
+            @Override
+            public String handle(final String address) {
+                final ByteArrayOutputStream response = new ByteArrayOutputStream();
+                final PrintStream out = new PrintStream(response);
+                System.out.println("Looking up " + address);
+                Worker.printRemoteAddress(address, out);
+                out.flush();
+                return response.toString().stripTrailing();     // host adds the final line terminator
+            }
+
+            @Override
+            public CompletionStage<String> handleAsync(final String address) {
+                return CompletableFuture.supplyAsync(() -> handle(address), LOOKUPS);
+            }
+        };
+    }
+
     public static void main(String[] a) throws IOException {
         final int max_buffered_conn = 6;             /* limit to number of requests that can be handled at once */
         final int port = 1565;
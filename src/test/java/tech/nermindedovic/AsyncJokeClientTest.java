@@ -0,0 +1,75 @@
+package tech.nermindedovic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncJokeClientTest {
+
+    private static int freePort() throws IOException {
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(final String what, final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("timed out waiting for " + what);
+            Thread.sleep(10);
+        }
+    }
+
+    // "<S2> JA alice : ..." -> "JA"
+    private static String key(final AsyncJokeClient.Session session) throws Exception {
+        return session.next().get(5, TimeUnit.SECONDS).split(" ")[1];
+    }
+
+    private static int position(final String clientId, final String category) {
+        final JokeClientPositions positions = JokeServer.getServerStateMap().get(clientId);
+        return (positions == null) ? 0 : positions.getPosition(ContentCategories.indexOf(category));
+    }
+
+    @Test
+    void positionsStayContiguousAcrossModeSwitch() throws Exception {
+        final CategorySelection previous = JokeServer.getCategorySelection();
+        final int jokePort = freePort();
+        final int subscriptionPort = freePort();
+        final Reactor reactor = new Reactor(List.of(
+                new LineProtocolService(jokePort, JokeServer::nextResponseFor, false, true),
+                new JokeSubscriptionServer(subscriptionPort, false)));
+        final Thread reactorThread = new Thread(reactor, "test:reactor");
+        reactorThread.setDaemon(true);              // stopping it would mean JokeServer.setServerIsUp(false) for every test
+        reactorThread.start();
+
+        try (final AsyncJokeClient client = new AsyncJokeClient("localhost", jokePort, subscriptionPort, 1)) {
+            JokeServer.applyAdminCommand("mode J");
+            await("MODE:J", () -> Set.of("J").equals(client.knownModeCategories()));
+            final AsyncJokeClient.Session session = client.session("alice");
+
+            assertEquals("JA", key(session));
+            assertEquals("JB", key(session));
+            assertEquals("JC", key(session));
+            await("JD prefetched", () -> position(session.getClientId(), "J") == 4);
+
+            JokeServer.applyAdminCommand("mode P");
+            await("MODE:P", () -> Set.of("P").equals(client.knownModeCategories()));
+            assertEquals("PA", key(session));       // JD stays parked, not shown in proverb mode
+            assertEquals("PB", key(session));
+            assertEquals("PC", key(session));
+
+            JokeServer.applyAdminCommand("mode J");
+            await("MODE:J", () -> Set.of("J").equals(client.knownModeCategories()));
+            assertEquals("JD", key(session));       // the parked item, server already moved past it
+        } finally {
+            JokeServer.setCategorySelection(previous);
+        }
+    }
+}
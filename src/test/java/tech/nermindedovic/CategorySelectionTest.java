@@ -0,0 +1,81 @@
+package tech.nermindedovic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategorySelectionTest {
+
+    @Test
+    void singleCategory() {
+        final CategorySelection proverbs = CategorySelection.parse("P");
+
+        assertEquals(ContentCategories.indexOf("P"), proverbs.pick());
+        assertEquals("P", proverbs.toString());
+        assertEquals("PROVERB", proverbs.describe());
+    }
+
+    @Test
+    void nextCyclesThroughRegistry() {
+        final CategorySelection jokes = CategorySelection.single(0);
+
+        assertEquals("P", jokes.next().toString());
+        assertEquals("J", jokes.next().next().toString());
+        assertEquals("J", CategorySelection.parse("J=1,P=1").next().toString());
+    }
+
+    @Test
+    void weightedMix() {
+        final CategorySelection mix = CategorySelection.parse("J=3,P=1");
+        final int[] picked = new int[ContentCategories.count()];
+        for (int i = 0; i < 40_000; i++) picked[mix.pick()]++;
+
+        assertEquals("J=3,P=1", mix.toString());
+        assertEquals(30_000, picked[ContentCategories.indexOf("J")], 1_000);
+        assertEquals(10_000, picked[ContentCategories.indexOf("P")], 1_000);
+    }
+
+    @Test
+    void rejectsUnknownCategoriesAndBadWeights() {
+        assertThrows(IllegalArgumentException.class, () -> CategorySelection.parse("X"));
+        assertThrows(IllegalArgumentException.class, () -> CategorySelection.parse("J=0,P=1"));
+        assertThrows(IllegalArgumentException.class, () -> CategorySelection.parse("J=1,P"));
+    }
+
+    @Test
+    void rejectsWeightsThatOverflow() {
+        assertThrows(IllegalArgumentException.class, () -> CategorySelection.parse("J=2147483647,P=1"));
+        assertThrows(IllegalArgumentException.class, () -> CategorySelection.parse("J=2147483648"));
+
+        final CategorySelection largest = CategorySelection.parse("J=2147483646,P=1");
+        for (int i = 0; i < 1_000; i++) largest.pick();             // total is exactly Integer.MAX_VALUE
+        assertEquals("J=2147483646,P=1", largest.toString());
+    }
+
+    @Test
+    void invalidModeCommandKeepsCurrentSelection() {
+        final CategorySelection previous = JokeServer.getCategorySelection();
+
+        assertFalse(JokeServer.applyAdminCommand("mode J=2147483647,P=1"));
+        assertSame(previous, JokeServer.getCategorySelection());
+    }
+
+    @Test
+    void positionsAreTrackedPerCategory() {
+        final String clientId = UUID.randomUUID().toString();
+        final CategorySelection previous = JokeServer.getCategorySelection();
+        try {
+            JokeServer.setCategorySelection(CategorySelection.parse("J"));
+            assertEquals("J:0", JokeServer.nextResponseFor(clientId));
+            assertEquals("J:1", JokeServer.nextResponseFor(clientId));
+            JokeServer.setCategorySelection(CategorySelection.parse("P"));
+            assertEquals("P:0", JokeServer.nextResponseFor(clientId));
+            JokeServer.setCategorySelection(CategorySelection.parse("J"));
+            assertEquals("J:2", JokeServer.nextResponseFor(clientId));
+        } finally {
+            JokeServer.setCategorySelection(previous);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package tech.nermindedovic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JokeDatagramServerTest {
+
+    private static int position(final String clientId) {
+        return JokeServer.getServerStateMap().get(clientId).getPosition(JokeServer.getCategorySelection().pick());
+    }
+
+    @Test
+    void retryWithSameNonceIsAnsweredWithoutAdvancing() {
+        final String clientId = UUID.randomUUID().toString();
+
+        final JokeDatagramServer.Reply first = JokeDatagramServer.replyFor(clientId, 42);
+        final JokeDatagramServer.Reply retry = JokeDatagramServer.replyFor(clientId, 42);
+
+        assertSame(first, retry);
+        assertEquals(first.response, retry.response);
+        assertEquals(1, position(clientId));
+    }
+
+    @Test
+    void newNonceAdvances() {
+        final String clientId = UUID.randomUUID().toString();
+
+        final JokeDatagramServer.Reply first = JokeDatagramServer.replyFor(clientId, 1);
+        final JokeDatagramServer.Reply second = JokeDatagramServer.replyFor(clientId, 2);
+
+        assertEquals(2, second.nonce);
+        assertNotEquals(first.response, second.response);
+        assertEquals(2, position(clientId));
+    }
+}
@@ -0,0 +1,111 @@
+package tech.nermindedovic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JokeSubscriptionServerTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(JokeSubscriptionServer.MIN_ITEM_INTERVAL_MS);
+
+    private static int positions(final String clientId) {
+        final JokeClientPositions positions = JokeServer.getServerStateMap().get(clientId);
+        int sum = 0;
+        for (int category = 0; category < ContentCategories.count(); category++) sum += positions.getPosition(category);
+        return sum;
+    }
+
+    /*
+    The reactor is never run: the test plays its part, calling poll with its own clock and flush
+    where the reactor would on OP_WRITE, while the client side simply does not read.
+     */
+    @Test
+    void slowSubscriberIsBoundedAndGetsLatestModeOnce() throws IOException {
+        final String clientId = UUID.randomUUID().toString();
+        final JokeSubscriptionServer server = new JokeSubscriptionServer(0, false);
+        final Reactor reactor = new Reactor(List.of(server));
+
+        try (final ServerSocketChannel listener = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             final SocketChannel client = SocketChannel.open()) {
+            client.setOption(StandardSocketOptions.SO_RCVBUF, 4096);       // small socket buffers, pending fills up sooner
+            client.connect(listener.getLocalAddress());
+            final SocketChannel channel = listener.accept();
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, 4096);
+
+            final JokeSubscriptionServer.Subscriber subscriber = server.new Subscriber(channel);
+            subscriber.key = reactor.register(channel, SelectionKey.OP_READ, subscriber);
+            client.write(ByteBuffer.wrap(("SUBSCRIBE " + clientId + " 100\n").getBytes(StandardCharsets.UTF_8)));
+            subscriber.read();
+            assertEquals(clientId, subscriber.clientId);
+
+            // one item per interval until the subscriber turns unwritable
+            long now = subscriber.nextItemAt;
+            for (int i = 0; i < 1_000_000 && subscriber.writable; i++, now += INTERVAL_NANOS) server.poll(now);
+            assertFalse(subscriber.writable);
+            assertTrue(subscriber.pendingBytes >= JokeSubscriptionServer.HIGH_WATERMARK);
+            assertTrue(subscriber.pendingBytes < JokeSubscriptionServer.HIGH_WATERMARK + 16);          // stopped at the first item past it
+
+            // items stay due but are skipped: neither queued nor advancing the client
+            final int position = positions(clientId);
+            final int pendingBytes = subscriber.pendingBytes;
+            for (int i = 0; i < 100; i++, now += INTERVAL_NANOS) server.poll(now);
+            assertEquals(position, positions(clientId));
+            assertEquals(pendingBytes, subscriber.pendingBytes);
+
+            // mode events while unwritable collapse into one
+            final CategorySelection selection = JokeServer.getCategorySelection();
+            try {
+                JokeSubscriptionServer.publishModeChange(CategorySelection.parse("P"));
+                subscriber.onModeChanged();
+                JokeSubscriptionServer.publishModeChange(CategorySelection.parse("J=3,P=1"));
+                subscriber.onModeChanged();
+                assertTrue(subscriber.modeStale);
+                assertEquals(pendingBytes, subscriber.pendingBytes);
+
+                // client catches up; the reactor flushes whenever the socket is writable again
+                client.configureBlocking(false);
+                final ByteArrayOutputStream received = new ByteArrayOutputStream();
+                final ByteBuffer buffer = ByteBuffer.allocate(8192);
+                for (int i = 0; i < 100_000 && !(subscriber.writable && subscriber.pending.isEmpty()); i++) {
+                    buffer.clear();
+                    client.read(buffer);
+                    received.write(buffer.array(), 0, buffer.position());
+                    subscriber.flush();
+                }
+                assertTrue(subscriber.writable);
+                assertFalse(subscriber.modeStale);
+                assertTrue(subscriber.pending.isEmpty());
+                for (int i = 0; i < 100; i++) {          // whatever is still in the socket buffers
+                    buffer.clear();
+                    client.read(buffer);
+                    received.write(buffer.array(), 0, buffer.position());
+                }
+
+                final List<String> lines = Arrays.asList(received.toString(StandardCharsets.UTF_8).split("\n"));
+                final long modeEvents = lines.stream().filter(line -> line.startsWith("MODE:")).count();
+                assertEquals(2, modeEvents);                                     // current mode on SUBSCRIBE, then the latest one
+                assertTrue(lines.get(0).startsWith("MODE:"));
+                assertEquals("MODE:J=3,P=1", lines.get(lines.size() - 1));
+                assertFalse(lines.contains("MODE:P"));
+            } finally {
+                JokeSubscriptionServer.publishModeChange(selection);
+            }
+        } finally {
+            server.close();
+        }
+    }
+}
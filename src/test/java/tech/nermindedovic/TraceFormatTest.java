@@ -0,0 +1,104 @@
+package tech.nermindedovic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFormatTest {
+
+    @TempDir
+    Path dir;
+
+    private Path writeTrace(final String initialSelection, final TraceRecord... records) throws IOException {
+        final Path file = dir.resolve("trace.bin");
+        try (final DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            TraceFormat.writeHeader(out, 1_642_300_000_000L, initialSelection);
+            for (final TraceRecord record : records) TraceFormat.write(out, record);
+        }
+        return file;
+    }
+
+    @Test
+    void requestsRoundTrip() throws IOException {
+        final String uuid = UUID.randomUUID().toString();
+        final String upperCaseUuid = uuid.toUpperCase();           // parses as a UUID but is not canonical, kept as text
+        final String[] initialSelection = new String[1];
+
+        final List<TraceRecord> records = TraceFormat.readAll(writeTrace("J=3,P=1",
+                TraceRecord.request(0, uuid, 'J', 0),
+                TraceRecord.request(127, "not-a-uuid", 'P', 128),
+                TraceRecord.request(16_384, upperCaseUuid, 'J', Integer.MAX_VALUE),
+                TraceRecord.request(Long.MAX_VALUE, "", 'P', 16_383)), initialSelection);
+
+        assertEquals("J=3,P=1", initialSelection[0]);
+        assertEquals(4, records.size());
+        assertRequest(records.get(0), 0, uuid, 'J', 0);
+        assertRequest(records.get(1), 127, "not-a-uuid", 'P', 128);
+        assertRequest(records.get(2), 16_384, upperCaseUuid, 'J', Integer.MAX_VALUE);
+        assertRequest(records.get(3), Long.MAX_VALUE, "", 'P', 16_383);
+    }
+
+    @Test
+    void adminCommandsRoundTrip() throws IOException {
+        final List<TraceRecord> records = TraceFormat.readAll(writeTrace("J",
+                TraceRecord.admin(5, TraceRecord.ADMIN_SWITCH),
+                TraceRecord.adminSelect(300, "mode J=3,P=1"),
+                TraceRecord.admin(1_000_000, TraceRecord.ADMIN_SHUTDOWN)), new String[1]);
+
+        assertEquals(3, records.size());
+        assertEquals(TraceRecord.ADMIN, records.get(0).type);
+        assertEquals(TraceRecord.ADMIN_SWITCH, records.get(0).command);
+        assertNull(records.get(0).commandLine);
+        assertEquals(TraceRecord.ADMIN_SELECT, records.get(1).command);
+        assertEquals(300, records.get(1).offsetMicros);
+        assertEquals("mode J=3,P=1", records.get(1).commandLine);
+        assertEquals(TraceRecord.ADMIN_SHUTDOWN, records.get(2).command);
+        assertEquals(1_000_000, records.get(2).offsetMicros);
+    }
+
+    @Test
+    void uuidClientIdsAreStoredCompactly() throws IOException {
+        final long uuidSize = Files.size(writeTrace("J", TraceRecord.request(0, UUID.randomUUID().toString(), 'J', 0)));
+        final long textSize = Files.size(writeTrace("J", TraceRecord.request(0, "x".repeat(36), 'J', 0)));
+
+        assertEquals(2 + 36 - 16, textSize - uuidSize);            // writeUTF length + 36 chars vs 16 bytes
+    }
+
+    @Test
+    void rejectsOtherVersions() throws IOException {
+        final Path file = writeTrace("J", TraceRecord.request(0, "client", 'J', 0));
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[4] = TraceFormat.VERSION + 1;                         // right after the magic
+        Files.write(file, bytes);
+
+        final IOException e = assertThrows(IOException.class, () -> TraceFormat.readAll(file, new String[1]));
+        assertTrue(e.getMessage().contains("unsupported trace version"));
+    }
+
+    @Test
+    void rejectsTruncatedTrace() throws IOException {
+        final Path file = writeTrace("J", TraceRecord.request(0, UUID.randomUUID().toString(), 'J', 300));
+        final byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        final IOException e = assertThrows(IOException.class, () -> TraceFormat.readAll(file, new String[1]));
+        assertEquals("trace truncated", e.getMessage());
+    }
+
+    private static void assertRequest(final TraceRecord record, final long offsetMicros, final String clientId, final char mode, final int position) {
+        assertEquals(TraceRecord.REQUEST, record.type);
+        assertEquals(offsetMicros, record.offsetMicros);
+        assertEquals(clientId, record.clientId);
+        assertEquals(mode, record.mode);
+        assertEquals(position, record.position);
+    }
+}